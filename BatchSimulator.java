@@ -0,0 +1,250 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The class <b>BatchSimulator</b> plays a large number of games without any user
+ * interface, on every core, and reports statistics on the number of moves they
+ * took. The moves are chosen by a <b>MovePolicy</b>.
+ *
+ * The games of each size are split in chunks of CHUNK_SIZE games run as fork-join
+ * tasks. A chunk has its own <b>GameEngine</b> (reused from one game to the next)
+ * and its own random generator, seeded from the seed of the simulation and the
+ * position of the chunk, so the results do not depend on the number of threads.
+ * Each chunk counts in its own <b>SimulationStats</b>, merged when the tasks join:
+ * nothing is shared while games are played.
+ *
+ * The games are played on a <b>GameEngine</b>, or with engine=bitboard on a
+ * <b>BitboardFlood</b>, which floods 64 dots per operation and does not record
+ * the moves for undo. Both play the same games for the same seed. The bitboard
+ * is faster on boards about 14 to 30 dots wide, and slower on larger boards,
+ * where each move floods the whole captured area again (see FloodBenchmark).
+ *
+ * Usage: java BatchSimulator [games=N] [sizes=10,14,20] [rules=PLANE_ORTHOGONAL]
+ * [policy=random|greedy] [engine=frontier|bitboard] [seed=S] [threads=T]
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public class BatchSimulator {
+
+	/**
+	 * Number of games played by one task
+	 */
+	private static final int CHUNK_SIZE = 256;
+
+	private final GameRules rules;
+	private final MovePolicy movePolicy;
+	private final boolean isBitboard;
+	private final long seed;
+	private final ForkJoinPool pool;
+
+	/**
+	 * Constructor
+	 *
+	 * @param rules
+	 *            the rules of the simulated games
+	 * @param movePolicy
+	 *            the policy choosing the moves
+	 * @param isBitboard
+	 *            true to play on a BitboardFlood instead of a GameEngine
+	 * @param seed
+	 *            the seed of the simulation
+	 * @param threads
+	 *            the number of worker threads
+	 */
+	public BatchSimulator(GameRules rules, MovePolicy movePolicy, boolean isBitboard, long seed, int threads) {
+		this.rules = rules;
+		this.movePolicy = movePolicy;
+		this.isBitboard = isBitboard;
+		this.seed = seed;
+		pool = new ForkJoinPool(threads);
+	}
+
+	/**
+	 * Plays games on boards of every given size
+	 *
+	 * @param sizes
+	 *            the sizes of the boards
+	 * @param games
+	 *            the number of games to play for each size
+	 * @return the statistics of the games
+	 */
+	public SimulationStats simulate(int[] sizes, long games) {
+		long start = System.nanoTime();
+		SimulationStats stats = new SimulationStats();
+
+		for (int size : sizes) {
+			long chunks = (games + CHUNK_SIZE - 1) / CHUNK_SIZE;
+			stats.merge(pool.invoke(new SimulationTask(size, games, 0, chunks)));
+		}
+
+		stats.setElapsedNanos(System.nanoTime() - start);
+		return stats;
+	}
+
+	/**
+	 * Stops the worker threads
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Plays the games of the chunks [firstChunk, lastChunk) of a size, splitting
+	 * the range in two until a single chunk is left
+	 */
+	private class SimulationTask extends RecursiveTask<SimulationStats> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int size;
+		private final long games;
+		private final long firstChunk;
+		private final long lastChunk;
+
+		private SimulationTask(int size, long games, long firstChunk, long lastChunk) {
+			this.size = size;
+			this.games = games;
+			this.firstChunk = firstChunk;
+			this.lastChunk = lastChunk;
+		}
+
+		protected SimulationStats compute() {
+			if (lastChunk - firstChunk > 1) {
+				long middle = (firstChunk + lastChunk) >>> 1;
+				SimulationTask right = new SimulationTask(size, games, middle, lastChunk);
+				right.fork();
+				SimulationStats stats = new SimulationTask(size, games, firstChunk, middle).compute();
+				stats.merge(right.join());
+				return stats;
+			}
+
+			SimulationStats stats = new SimulationStats();
+			if (firstChunk == lastChunk) {
+				return stats;
+			}
+
+			SplittableRandom random = new SplittableRandom(seed ^ (31L * size + firstChunk) * 0x9E3779B97F4A7C15L);
+			long count = Math.min(CHUNK_SIZE, games - firstChunk * CHUNK_SIZE);
+			if (isBitboard) {
+				playBitboardGames(stats, random, count);
+				return stats;
+			}
+
+			GameEngine gameEngine = new GameEngine(size, random.nextLong(), rules);
+
+			for (long game = 0; game < count; game++) {
+				if (game > 0) {
+					gameEngine.reset();
+				}
+
+				gameEngine.selectDot(random.nextInt(size), random.nextInt(size));
+				while (!gameEngine.isFinished()) {
+					gameEngine.play(movePolicy.chooseColor(gameEngine, random));
+				}
+
+				stats.addGame(size, gameEngine.getNumberOfSteps());
+			}
+			return stats;
+		}
+
+		/**
+		 * Plays the games of the chunk on a bitboard, drawing the boards and the
+		 * moves exactly as on a GameEngine
+		 */
+		private void playBitboardGames(SimulationStats stats, SplittableRandom random, long count) {
+			GameModel gameModel = new GameModel(size, random.nextLong());
+			gameModel.setIsPlane(rules.isPlane());
+			gameModel.setIsOrthogonal(rules.isOrthogonal());
+			BitboardFlood bitboard = new BitboardFlood(gameModel);
+
+			for (long game = 0; game < count; game++) {
+				if (game > 0) {
+					gameModel.reset();
+					bitboard.load(gameModel);
+				}
+
+				int row = random.nextInt(size);
+				int column = random.nextInt(size);
+				bitboard.capture(row, column);
+				bitboard.flood(gameModel.getColor(row, column));
+
+				int steps = 0;
+				while (!bitboard.isFinished()) {
+					bitboard.flood(movePolicy.chooseColor(bitboard, random));
+					steps++;
+				}
+
+				stats.addGame(size, steps);
+			}
+		}
+
+	}
+
+	/**
+	 * <b>main</b> of the simulation. The parameters are given as name=value
+	 *
+	 * @param args
+	 *            command line parameters
+	 */
+	public static void main(String[] args) {
+		long games = 10000;
+		int[] sizes = {10, 14, 20};
+		GameRules rules = GameRules.PLANE_ORTHOGONAL;
+		MovePolicy movePolicy = new GreedyMovePolicy();
+		boolean isBitboard = false;
+		long seed = System.nanoTime();
+		int threads = Runtime.getRuntime().availableProcessors();
+
+		try {
+			for (String arg : args) {
+				String[] parameter = arg.split("=", 2);
+				String value = (parameter.length == 2 ? parameter[1] : "");
+
+				if (parameter[0].equals("games")) {
+					games = Long.parseLong(value);
+				} else if (parameter[0].equals("sizes")) {
+					String[] values = value.split(",");
+					sizes = new int[values.length];
+					for (int i = 0; i < values.length; i++) {
+						sizes[i] = Integer.parseInt(values[i].trim());
+					}
+				} else if (parameter[0].equals("rules")) {
+					rules = GameRules.valueOf(value.toUpperCase());
+				} else if (parameter[0].equals("policy")) {
+					if (value.equalsIgnoreCase("random")) {
+						movePolicy = new RandomMovePolicy();
+					} else if (value.equalsIgnoreCase("greedy")) {
+						movePolicy = new GreedyMovePolicy();
+					} else {
+						throw new IllegalArgumentException("Unknown policy " + value);
+					}
+				} else if (parameter[0].equals("engine")) {
+					if (!value.equalsIgnoreCase("frontier") && !value.equalsIgnoreCase("bitboard")) {
+						throw new IllegalArgumentException("Unknown engine " + value);
+					}
+					isBitboard = value.equalsIgnoreCase("bitboard");
+				} else if (parameter[0].equals("seed")) {
+					seed = Long.parseLong(value);
+				} else if (parameter[0].equals("threads")) {
+					threads = Integer.parseInt(value);
+				} else {
+					System.out.println("Unknown parameter " + arg);
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			System.out.println("Invalid argument: " + e.getMessage());
+			return;
+		}
+
+		System.out.println("Simulating " + games + " games per size with " + threads + " threads, rules "
+				+ rules + ", policy " + movePolicy.getClass().getSimpleName() + ", engine "
+				+ (isBitboard ? "bitboard" : "frontier") + ", seed " + seed);
+
+		BatchSimulator simulator = new BatchSimulator(rules, movePolicy, isBitboard, seed, threads);
+		System.out.print(simulator.simulate(sizes, games));
+		System.out.print(EngineMetrics.summary());
+		simulator.shutdown();
+	}
+
+}
@@ -0,0 +1,362 @@
+import java.util.Arrays;
+
+/**
+ * The class <b>BitboardFlood</b> is an alternative flood engine that works on
+ * bitplanes instead of visiting the dots one by one. The board is stored as one
+ * bitset per color plus one bitset of captured dots, all in row-major order (the
+ * dot (i,j) is bit i*size + j), packed in long words.
+ *
+ * A flood grows the captured bitset with whole-word shifts, ANDs and ORs until
+ * nothing changes, so 64 dots are handled per operation. The four rules of the
+ * game are supported: plane or torus (wrap-around of the shifts) and orthogonal
+ * or diagonal adjacency (a diagonal neighbourhood is the horizontal dilation
+ * followed by the vertical one).
+ *
+ * The engine keeps its own copy of the board: it is loaded from a <b>GameModel</b>
+ * and the captured dots can be written back with <b>applyTo</b>. It is a
+ * <b>SimulatedGame</b>, so BatchSimulator plays its games on it with engine=bitboard;
+ * its arrays are reused by <b>load</b> from one board to the next.
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public class BitboardFlood implements SimulatedGame {
+
+	private int sizeOfGame;
+	private int numberOfDots;
+	private int numberOfWords;
+	private boolean isPlane;
+	private boolean isOrthogonal;
+	private int currentSelectedColor;
+
+	/**
+	 * One bitplane per color, and the captured bitplane
+	 */
+	private long[][] colorPlanes;
+	private long[] captured;
+
+	/**
+	 * Masks of the first and last column of the board, and of the valid bits of
+	 * the last word
+	 */
+	private long[] firstColumn;
+	private long[] lastColumn;
+	private long lastWordMask;
+
+	/**
+	 * Scratch bitsets reused by every flood
+	 */
+	private long[] added;
+	private long[] horizontal;
+	private long[] dilated;
+
+	/**
+	 * The dots touching the captured region (captured dots included), computed
+	 * when a frontier size is first asked after a change
+	 */
+	private long[] frontier;
+	private boolean frontierValid;
+
+	/**
+	 * Constructor, loads the board, the captured dots and the rules of a model
+	 *
+	 * @param gameModel
+	 *            the model to copy
+	 */
+	public BitboardFlood(GameModel gameModel) {
+		load(gameModel);
+	}
+
+	/**
+	 * Loads another board, reusing the arrays if they have the right length
+	 *
+	 * @param gameModel
+	 *            the model to copy
+	 */
+	public void load(GameModel gameModel) {
+		sizeOfGame = gameModel.getSize();
+		numberOfDots = sizeOfGame * sizeOfGame;
+		isPlane = gameModel.getIsPlane();
+		isOrthogonal = gameModel.getIsOrthogonal();
+		currentSelectedColor = gameModel.getCurrentSelectedColor();
+		frontierValid = false;
+
+		if (captured == null || numberOfWords != (numberOfDots + 63) >>> 6) {
+			numberOfWords = (numberOfDots + 63) >>> 6;
+			colorPlanes = new long[GameModel.NUMBER_OF_COLORS][numberOfWords];
+			captured = new long[numberOfWords];
+			firstColumn = new long[numberOfWords];
+			lastColumn = new long[numberOfWords];
+			added = new long[numberOfWords];
+			horizontal = new long[numberOfWords];
+			dilated = new long[numberOfWords];
+			frontier = new long[numberOfWords];
+		} else {
+			for (long[] plane : colorPlanes) {
+				Arrays.fill(plane, 0);
+			}
+			Arrays.fill(captured, 0);
+			Arrays.fill(firstColumn, 0);
+			Arrays.fill(lastColumn, 0);
+		}
+
+		int remainder = numberOfDots & 63;
+		lastWordMask = (remainder == 0 ? -1L : (1L << remainder) - 1);
+
+		for (int i = 0; i < sizeOfGame; i++) {
+			setBit(firstColumn, i * sizeOfGame);
+			setBit(lastColumn, i * sizeOfGame + sizeOfGame - 1);
+
+			for (int j = 0; j < sizeOfGame; j++) {
+				int index = i * sizeOfGame + j;
+				if (gameModel.isCaptured(i, j)) {
+					setBit(captured, index);
+				} else {
+					setBit(colorPlanes[gameModel.getColor(i, j)], index);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Captures every dot of the given color connected to the captured region
+	 *
+	 * @param color
+	 *            the selected color
+	 * @return the number of newly captured dots
+	 */
+	public int flood(int color) {
+		currentSelectedColor = color;
+		frontierValid = false;
+		return grow(captured, colorPlanes[color]);
+	}
+
+	/**
+	 * Captures a single dot, for instance the first dot of the game, without
+	 * changing the selected color
+	 *
+	 * @param i
+	 *            the row of the dot
+	 * @param j
+	 *            the column of the dot
+	 */
+	public void capture(int i, int j) {
+		setBit(captured, i * sizeOfGame + j);
+		frontierValid = false;
+	}
+
+	/**
+	 * Getter for the current selected color
+	 *
+	 * @return the color of the last flood, or the one of the model loaded
+	 */
+	public int getCurrentSelectedColor() {
+		return currentSelectedColor;
+	}
+
+	/**
+	 * Counts the uncaptured dots of a color that touch the captured region
+	 *
+	 * @param color
+	 *            the color
+	 * @return the number of frontier dots of that color
+	 */
+	public int getFrontierSize(int color) {
+		if (!frontierValid) {
+			dilate(captured);
+			System.arraycopy(dilated, 0, frontier, 0, numberOfWords);
+			frontierValid = true;
+		}
+
+		long[] plane = colorPlanes[color];
+		int count = 0;
+		for (int w = 0; w < numberOfWords; w++) {
+			count += Long.bitCount(frontier[w] & plane[w] & ~captured[w]);
+		}
+		return count;
+	}
+
+	/**
+	 * Adds to a set every dot of allowed connected to it
+	 *
+	 * @param set
+	 *            the bitset to grow
+	 * @param allowed
+	 *            the dots that may be added
+	 * @return the number of added dots
+	 */
+	private int grow(long[] set, long[] allowed) {
+		int count = 0;
+
+		// The first expansion starts from the whole set,
+		// the next ones only from the dots added by the previous one
+		long[] source = set;
+		boolean changed = true;
+		while (changed) {
+			dilate(source);
+
+			changed = false;
+			for (int w = 0; w < numberOfWords; w++) {
+				long add = dilated[w] & allowed[w] & ~set[w];
+				added[w] = add;
+				if (add != 0) {
+					set[w] |= add;
+					count += Long.bitCount(add);
+					changed = true;
+				}
+			}
+			source = added;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Computes in <b>dilated</b> the set of dots adjacent to a dot of source
+	 * (source included), according to the rules of the game
+	 *
+	 * @param source
+	 *            the bitset to dilate
+	 */
+	private void dilate(long[] source) {
+		// Horizontal neighbours: shift by one, without leaking to the next row
+		long[] target = (isOrthogonal ? dilated : horizontal);
+		System.arraycopy(source, 0, target, 0, numberOfWords);
+		shiftOr(source, null, 1, target, firstColumn);
+		shiftOr(source, null, -1, target, lastColumn);
+		if (!isPlane) {
+			shiftOr(source, lastColumn, -(sizeOfGame - 1), target, null);
+			shiftOr(source, firstColumn, sizeOfGame - 1, target, null);
+		}
+		target[numberOfWords - 1] &= lastWordMask;
+
+		// Vertical neighbours: of the dots themselves (orthogonal) or of the
+		// horizontal dilation (diagonal)
+		long[] vertical = (isOrthogonal ? source : horizontal);
+		if (!isOrthogonal) {
+			System.arraycopy(horizontal, 0, dilated, 0, numberOfWords);
+		}
+		shiftOr(vertical, null, sizeOfGame, dilated, null);
+		shiftOr(vertical, null, -sizeOfGame, dilated, null);
+		if (!isPlane) {
+			shiftOr(vertical, null, numberOfDots - sizeOfGame, dilated, null);
+			shiftOr(vertical, null, -(numberOfDots - sizeOfGame), dilated, null);
+		}
+
+		dilated[numberOfWords - 1] &= lastWordMask;
+	}
+
+	/**
+	 * ORs into target the bitset source (optionally restricted to sourceMask)
+	 * shifted by distance bits toward the higher indices. Bits leaving the bitset
+	 * are dropped, and bits landing on targetMask are discarded.
+	 *
+	 * @param source
+	 *            the bitset to shift
+	 * @param sourceMask
+	 *            the bits of source to keep before shifting, or null for all
+	 * @param distance
+	 *            the shift, positive toward the higher indices
+	 * @param target
+	 *            the bitset receiving the result
+	 * @param targetMask
+	 *            the bits to leave untouched in target, or null
+	 */
+	private void shiftOr(long[] source, long[] sourceMask, int distance, long[] target, long[] targetMask) {
+		int wordShift = Math.abs(distance) >>> 6;
+		int bitShift = Math.abs(distance) & 63;
+
+		for (int w = 0; w < numberOfWords; w++) {
+			long value;
+			if (distance >= 0) {
+				value = word(source, sourceMask, w - wordShift) << bitShift;
+				if (bitShift != 0) {
+					value |= word(source, sourceMask, w - wordShift - 1) >>> (64 - bitShift);
+				}
+			} else {
+				value = word(source, sourceMask, w + wordShift) >>> bitShift;
+				if (bitShift != 0) {
+					value |= word(source, sourceMask, w + wordShift + 1) << (64 - bitShift);
+				}
+			}
+			if (targetMask != null) {
+				value &= ~targetMask[w];
+			}
+			target[w] |= value;
+		}
+	}
+
+	/**
+	 * Reads a word of a bitset, zero outside of the bitset
+	 */
+	private long word(long[] bits, long[] mask, int w) {
+		if (w < 0 || w >= numberOfWords) {
+			return 0L;
+		}
+		return (mask == null ? bits[w] : bits[w] & mask[w]);
+	}
+
+	/**
+	 * Captures in the model every dot captured by this engine
+	 *
+	 * @param gameModel
+	 *            a model of the same board
+	 */
+	public void applyTo(GameModel gameModel) {
+		for (int w = 0; w < numberOfWords; w++) {
+			long bits = captured[w];
+			while (bits != 0) {
+				int index = (w << 6) + Long.numberOfTrailingZeros(bits);
+				bits &= bits - 1;
+
+				int i = index / sizeOfGame;
+				int j = index % sizeOfGame;
+				if (!gameModel.isCaptured(i, j)) {
+					gameModel.capture(i, j);
+				}
+			}
+		}
+	}
+
+	/**
+	 * returns true is the dot is captured, false otherwise
+	 *
+	 * @param i
+	 *            the row of the dot
+	 * @param j
+	 *            the column of the dot
+	 */
+	public boolean isCaptured(int i, int j) {
+		int index = i * sizeOfGame + j;
+		return (captured[index >>> 6] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Counts the captured dots
+	 *
+	 * @return the number of captured dots
+	 */
+	public int getNumberCaptured() {
+		int count = 0;
+		for (int w = 0; w < numberOfWords; w++) {
+			count += Long.bitCount(captured[w]);
+		}
+		return count;
+	}
+
+	/**
+	 * Checks if every dot is captured
+	 *
+	 * @return true if the game is finished
+	 */
+	public boolean isFinished() {
+		return getNumberCaptured() == numberOfDots;
+	}
+
+	/**
+	 * Sets the bit at the given index of a bitset
+	 */
+	private static void setBit(long[] bits, int index) {
+		bits[index >>> 6] |= 1L << index;
+	}
+
+}
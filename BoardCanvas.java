@@ -0,0 +1,342 @@
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import javax.swing.JComponent;
+import javax.swing.JScrollPane;
+import javax.swing.JViewport;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+
+/**
+ * The class <b>BoardCanvas</b> displays the board as a single component, for the
+ * boards too large for a grid of <b>DotButton</b>s: it paints the dots straight
+ * from a snapshot of the game, only in the area to repaint, and finds the dot
+ * under the mouse by arithmetic. The number of components does not depend on the
+ * size of the board.
+ *
+ * Each dot is a square of cellSize pixels. From ICON_CELL_SIZE on, the dots are
+ * drawn with the icons of <b>IconAtlas</b>, scaled once per size; below, as plain
+ * squares of the color of the icons, through an image of one pixel per dot
+ * scaled in a single drawImage.
+ *
+ * The canvas is meant to be put in a JScrollPane. The mouse wheel scrolls, and
+ * zooms with the control key pressed. A click on a dot fires an ActionEvent whose
+ * source is the canvas; the dot is then given by getRow and getColumn.
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public class BoardCanvas extends JComponent implements Scrollable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final int MINIMUM_CELL_SIZE = 1;
+	public static final int MAXIMUM_CELL_SIZE = 40;
+
+	/**
+	 * Smallest size of the dots drawn with icons
+	 */
+	public static final int ICON_CELL_SIZE = 8;
+
+	/**
+	 * Largest size of the area shown by the scroll pane
+	 */
+	private static final int VIEWPORT_SIZE = 640;
+
+	private GameSnapshot gameSnapshot;
+	private int cellSize;
+
+	/**
+	 * One pixel per dot of the area being painted, reused between paints
+	 */
+	private BufferedImage cellImage;
+
+	/**
+	 * The dot of the last click
+	 */
+	private int row;
+	private int column;
+
+	/**
+	 * Constructor
+	 *
+	 * @param gameSnapshot
+	 *            the state of the game
+	 * @param cellSize
+	 *            the size of a dot, in pixels
+	 */
+	public BoardCanvas(GameSnapshot gameSnapshot, int cellSize) {
+		this.gameSnapshot = gameSnapshot;
+		this.cellSize = clampCellSize(cellSize);
+		row = -1;
+		column = -1;
+
+		setOpaque(true);
+		setBackground(Color.WHITE);
+
+		MouseAdapter mouseAdapter = new MouseAdapter() {
+
+			public void mouseReleased(MouseEvent e) {
+				if (SwingUtilities.isLeftMouseButton(e) && contains(e.getPoint())) {
+					click(e.getY() / BoardCanvas.this.cellSize, e.getX() / BoardCanvas.this.cellSize);
+				}
+			}
+
+			public void mouseWheelMoved(MouseWheelEvent e) {
+				if (e.isControlDown()) {
+					zoom(e.getWheelRotation() < 0, e.getX(), e.getY());
+				} else {
+					// Scrolling is left to the scroll pane
+					JScrollPane scrollPane = (JScrollPane) SwingUtilities.getAncestorOfClass(JScrollPane.class,
+							BoardCanvas.this);
+					if (scrollPane != null) {
+						scrollPane.dispatchEvent(SwingUtilities.convertMouseEvent(BoardCanvas.this, e, scrollPane));
+					}
+				}
+			}
+
+		};
+		addMouseListener(mouseAdapter);
+		addMouseWheelListener(mouseAdapter);
+	}
+
+	/**
+	 * Adds a listener of the clicks on the dots
+	 *
+	 * @param listener
+	 *            the listener, usually the controller
+	 */
+	public void addActionListener(ActionListener listener) {
+		listenerList.add(ActionListener.class, listener);
+	}
+
+	/**
+	 * Records the dot clicked and notifies the listeners
+	 */
+	private void click(int row, int column) {
+		if (row >= gameSnapshot.getSize() || column >= gameSnapshot.getSize()) {
+			return;
+		}
+		this.row = row;
+		this.column = column;
+
+		ActionEvent event = new ActionEvent(this, ActionEvent.ACTION_PERFORMED, row + "," + column);
+		for (ActionListener listener : listenerList.getListeners(ActionListener.class)) {
+			listener.actionPerformed(event);
+		}
+	}
+
+	/**
+	 * Getter for the row of the last dot clicked
+	 *
+	 * @return the row, -1 before the first click
+	 */
+	public int getRow() {
+		return row;
+	}
+
+	/**
+	 * Getter for the column of the last dot clicked
+	 *
+	 * @return the column, -1 before the first click
+	 */
+	public int getColumn() {
+		return column;
+	}
+
+	/**
+	 * Getter for the size of a dot
+	 *
+	 * @return the size in pixels
+	 */
+	public int getCellSize() {
+		return cellSize;
+	}
+
+	/**
+	 * Changes the size of the dots
+	 *
+	 * @param cellSize
+	 *            the size in pixels, between MINIMUM_CELL_SIZE and
+	 *            MAXIMUM_CELL_SIZE
+	 */
+	public void setCellSize(int cellSize) {
+		cellSize = clampCellSize(cellSize);
+		if (cellSize != this.cellSize) {
+			this.cellSize = cellSize;
+			revalidate();
+			repaint();
+		}
+	}
+
+	private static int clampCellSize(int cellSize) {
+		return Math.max(MINIMUM_CELL_SIZE, Math.min(MAXIMUM_CELL_SIZE, cellSize));
+	}
+
+	/**
+	 * Doubles or halves the size of the dots, keeping the dot under the mouse
+	 * at the same place in the scroll pane
+	 */
+	private void zoom(boolean zoomIn, int x, int y) {
+		int previousSize = cellSize;
+		setCellSize(zoomIn ? cellSize * 2 : cellSize / 2);
+		if (cellSize == previousSize || !(getParent() instanceof JViewport)) {
+			return;
+		}
+
+		JViewport viewport = (JViewport) getParent();
+		Rectangle visible = viewport.getViewRect();
+		int newX = (int) ((long) x * cellSize / previousSize);
+		int newY = (int) ((long) y * cellSize / previousSize);
+
+		// The new size must be laid out before the view can move past the old one
+		setSize(getPreferredSize());
+		int maximumX = Math.max(0, getWidth() - visible.width);
+		int maximumY = Math.max(0, getHeight() - visible.height);
+		viewport.setViewPosition(new Point(Math.max(0, Math.min(maximumX, visible.x + newX - x)),
+				Math.max(0, Math.min(maximumY, visible.y + newY - y))));
+	}
+
+	/**
+	 * Shows a new state of the game, repainting the smallest rectangle that holds
+	 * the dots whose color changed
+	 *
+	 * @param gameSnapshot
+	 *            the state of the game
+	 */
+	public void update(GameSnapshot gameSnapshot) {
+		int[] changedDots = gameSnapshot.getChangedDots();
+		if (gameSnapshot.getSize() != this.gameSnapshot.getSize()) {
+			this.gameSnapshot = gameSnapshot;
+			revalidate();
+			repaint();
+			return;
+		}
+		this.gameSnapshot = gameSnapshot;
+		if (changedDots == null) {
+			repaint();
+			return;
+		}
+		if (changedDots.length == 0) {
+			return;
+		}
+
+		int size = gameSnapshot.getSize();
+		int firstRow = changedDots[0] / size;
+		int lastRow = changedDots[changedDots.length - 1] / size;
+		int firstColumn = size;
+		int lastColumn = -1;
+		for (int index : changedDots) {
+			firstColumn = Math.min(firstColumn, index % size);
+			lastColumn = Math.max(lastColumn, index % size);
+		}
+
+		repaint(firstColumn * cellSize, firstRow * cellSize, (lastColumn - firstColumn + 1) * cellSize,
+				(lastRow - firstRow + 1) * cellSize);
+	}
+
+	public Dimension getPreferredSize() {
+		int length = gameSnapshot.getSize() * cellSize;
+		return new Dimension(length, length);
+	}
+
+	/**
+	 * Paints the dots that intersect the clip
+	 */
+	protected void paintComponent(Graphics g) {
+		Rectangle clip = g.getClipBounds();
+		if (clip == null) {
+			clip = new Rectangle(0, 0, getWidth(), getHeight());
+		}
+		g.setColor(getBackground());
+		g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+		int size = gameSnapshot.getSize();
+		int firstRow = Math.max(0, clip.y / cellSize);
+		int firstColumn = Math.max(0, clip.x / cellSize);
+		int lastRow = Math.min(size - 1, (clip.y + clip.height - 1) / cellSize);
+		int lastColumn = Math.min(size - 1, (clip.x + clip.width - 1) / cellSize);
+		if (lastRow < firstRow || lastColumn < firstColumn) {
+			return;
+		}
+
+		if (cellSize >= ICON_CELL_SIZE) {
+			paintIcons(g, firstRow, lastRow, firstColumn, lastColumn);
+		} else {
+			paintSquares(g, firstRow, lastRow, firstColumn, lastColumn);
+		}
+	}
+
+	/**
+	 * Draws each dot with its icon, from the atlas of the size of the dots
+	 */
+	private void paintIcons(Graphics g, int firstRow, int lastRow, int firstColumn, int lastColumn) {
+		BufferedImage atlas = IconAtlas.getAtlas(cellSize);
+
+		for (int i = firstRow; i <= lastRow; i++) {
+			for (int j = firstColumn; j <= lastColumn; j++) {
+				IconAtlas.draw(g, atlas, gameSnapshot.getColor(i, j), j * cellSize, i * cellSize);
+			}
+		}
+	}
+
+	/**
+	 * Writes one pixel per dot in cellImage, then draws it scaled to the size of
+	 * the dots
+	 */
+	private void paintSquares(Graphics g, int firstRow, int lastRow, int firstColumn, int lastColumn) {
+		int width = lastColumn - firstColumn + 1;
+		int height = lastRow - firstRow + 1;
+		if (cellImage == null || cellImage.getWidth() < width || cellImage.getHeight() < height) {
+			cellImage = new BufferedImage(Math.max(width, (cellImage == null ? 0 : cellImage.getWidth())),
+					Math.max(height, (cellImage == null ? 0 : cellImage.getHeight())), BufferedImage.TYPE_INT_RGB);
+		}
+
+		int[] pixels = ((DataBufferInt) cellImage.getRaster().getDataBuffer()).getData();
+		int stride = cellImage.getWidth();
+		int size = gameSnapshot.getSize();
+		for (int i = 0; i < height; i++) {
+			int index = (firstRow + i) * size + firstColumn;
+			int pixel = i * stride;
+			for (int j = 0; j < width; j++) {
+				pixels[pixel + j] = IconAtlas.getRGB(gameSnapshot.getColor(index + j));
+			}
+		}
+
+		int x = firstColumn * cellSize;
+		int y = firstRow * cellSize;
+		g.drawImage(cellImage, x, y, x + width * cellSize, y + height * cellSize, 0, 0, width, height, null);
+	}
+
+	public Dimension getPreferredScrollableViewportSize() {
+		Dimension preferred = getPreferredSize();
+		return new Dimension(Math.min(VIEWPORT_SIZE, preferred.width), Math.min(VIEWPORT_SIZE, preferred.height));
+	}
+
+	public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+		return Math.max(cellSize, 8);
+	}
+
+	public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+		return (orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width);
+	}
+
+	public boolean getScrollableTracksViewportWidth() {
+		return false;
+	}
+
+	public boolean getScrollableTracksViewportHeight() {
+		return false;
+	}
+
+}
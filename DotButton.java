@@ -1,7 +1,7 @@
 import java.awt.Color;
 import java.awt.Dimension;
 
-import javax.swing.ImageIcon;
+import javax.swing.Icon;
 import javax.swing.JButton;
 import javax.swing.BorderFactory;
 import javax.swing.border.Border;
@@ -45,16 +45,15 @@ public class DotButton extends JButton {
     private Coordinate point;
 
     /**
-     * An array is used to cache all the images. Since the images are not
-     * modified, all the cells that display the same image reuse the same
-     * <b>ImageIcon</b> object. Notice the use of the keyword <b>static</b>.
+     * The sizes of icons, and their size in pixels. The images are shared by all
+     * the cells through <b>IconAtlas</b>.
      */
     public static final int NUMBER_OF_SIZES = 3;
     public static final int SMALL_SIZE     = 0;
     public static final int MEDIUM_SIZE    = 1;
     public static final int LARGE_SIZE     = 2;
 
-    private static final ImageIcon[][] icons = new ImageIcon[NUMBER_OF_SIZES][GameModel.NUMBER_OF_COLORS];
+    private static final int[] PIXELS = {11, 28, 40};
 
 
     /**
@@ -97,27 +96,26 @@ public class DotButton extends JButton {
  
 
      /**
-     * Determine the image to use based on the cell color. Implements a caching mechanism.
+     * Determine the image to use based on the cell color. The icons are shared,
+     * see <b>IconAtlas</b>.
      * 
      * @return the image to be displayed by the button
      */
-    private ImageIcon getImageIcon() {
-	
-        String directory = (iconSize == SMALL_SIZE ? "S": (iconSize == MEDIUM_SIZE ? "M" : "N"));
-
-        if (icons[iconSize][color] == null) {
-        	    icons[iconSize][color] = new ImageIcon("data/" + directory + "/ball-" + Integer.toString(color) + ".png");
-        }
-        return icons[iconSize][color];
+    private Icon getImageIcon() {
+        return IconAtlas.getIcon(PIXELS[iconSize], color);
     }
 
     /**
-     * Changes the cell color of this cell. The image is updated accordingly.
+     * Changes the cell color of this cell. The image is updated accordingly,
+     * and only repainted if the color changed.
      * 
      * @param color
      *            the color to set
      */
     public void setColor(int color) {
+    	if (color == this.color) {
+    		return;
+    	}
     	this.color = color;
     	setIcon(getImageIcon());
 		repaint();
@@ -0,0 +1,445 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * The class <b>EngineMetrics</b> measures the operations of the engine: moves,
+ * undo, redo, clones of the model, saves and loads. For each operation it counts
+ * the calls, the dots they changed and the bytes allocated by the calling thread
+ * (when the JVM can measure it), and keeps a histogram of their latencies.
+ *
+ * The histogram is HDR-style: below 2^SUB_BUCKET_BITS nanoseconds every value has
+ * its own bucket; above, each power of two is split in 2^SUB_BUCKET_BITS buckets,
+ * so a percentile is known within about 6% whatever the scale, with a fixed
+ * array of counters.
+ *
+ * The metrics are published as one MXBean per operation
+ * (floodit:type=EngineMetrics,operation=MOVE...) once registerMBeans is called,
+ * and the operations that take longer than the threshold of the JFR event
+ * floodit.EngineOperation (1 ms by default, changed by the settings of a
+ * recording) are also recorded as such events, with the size and the rules of the
+ * board, to find the slow moves in a recording.
+ *
+ * They are on unless the system property floodit.metrics is false. ENABLED is a
+ * constant, so when it is false the JIT removes the measures entirely.
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public final class EngineMetrics {
+
+	public static final boolean ENABLED = !"false".equals(System.getProperty("floodit.metrics"));
+
+	/**
+	 * The measured operations
+	 */
+	public enum Operation {
+		MOVE, UNDO, REDO, CLONE, SAVE, LOAD
+	}
+
+	/**
+	 * Number of bits of precision of the histograms
+	 */
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int NUMBER_OF_BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+	private static final com.sun.management.ThreadMXBean ALLOCATION_COUNTER = allocationCounter();
+
+	private static final EventType EVENT_TYPE = (ENABLED ? EventType.getEventType(OperationEvent.class) : null);
+
+	private static final Metrics[] METRICS = new Metrics[Operation.values().length];
+	static {
+		for (Operation operation : Operation.values()) {
+			METRICS[operation.ordinal()] = new Metrics(operation);
+		}
+	}
+
+	/**
+	 * The class is only a set of static methods
+	 */
+	private EngineMetrics() {
+	}
+
+	/**
+	 * Finds the counter of the bytes allocated by a thread, if the JVM has one
+	 */
+	private static com.sun.management.ThreadMXBean allocationCounter() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (ENABLED && threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+			if (counter.isThreadAllocatedMemorySupported() && counter.isThreadAllocatedMemoryEnabled()) {
+				return counter;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Starts measuring an operation
+	 *
+	 * @return the start time, to give to record
+	 */
+	public static long startTime() {
+		return (ENABLED ? System.nanoTime() : 0);
+	}
+
+	/**
+	 * Starts the JFR event of an operation, if a recording asks for it. It must be
+	 * called before startAllocation, so its allocation is not counted
+	 *
+	 * @return the event, to give to record, or null
+	 */
+	public static OperationEvent startEvent() {
+		if (!ENABLED || !EVENT_TYPE.isEnabled()) {
+			return null;
+		}
+		OperationEvent event = new OperationEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Starts measuring the allocations of an operation
+	 *
+	 * @return the bytes allocated so far by the thread, to give to record
+	 */
+	public static long startAllocation() {
+		return (ENABLED && ALLOCATION_COUNTER != null ? ALLOCATION_COUNTER.getCurrentThreadAllocatedBytes() : 0);
+	}
+
+	/**
+	 * Records an operation that just ended
+	 *
+	 * @param operation
+	 *            the operation
+	 * @param startTime
+	 *            the value of startTime when it started
+	 * @param startAllocation
+	 *            the value of startAllocation when it started
+	 * @param event
+	 *            the value of startEvent when it started
+	 * @param dots
+	 *            the number of dots it captured or released (0 for the operations
+	 *            on a whole game)
+	 * @param gameModel
+	 *            the game it was applied to
+	 */
+	public static void record(Operation operation, long startTime, long startAllocation, OperationEvent event,
+			int dots, GameModel gameModel) {
+		if (!ENABLED) {
+			return;
+		}
+
+		long latency = System.nanoTime() - startTime;
+		if (event != null) {
+			event.end();
+		}
+		long allocated = (ALLOCATION_COUNTER != null
+				? ALLOCATION_COUNTER.getCurrentThreadAllocatedBytes() - startAllocation : 0);
+		METRICS[operation.ordinal()].record(latency, dots, allocated);
+
+		if (event == null) {
+			return;
+		}
+		// The duration of the event is checked against its threshold
+		if (event.shouldCommit()) {
+			event.operation = operation.name();
+			event.latency = latency;
+			event.dots = dots;
+			event.allocated = allocated;
+			event.size = gameModel.getSize();
+			event.rules = GameRules.of(gameModel).name();
+			event.commit();
+		}
+	}
+
+	/**
+	 * Getter for the metrics of an operation
+	 *
+	 * @param operation
+	 *            the operation
+	 * @return its metrics
+	 */
+	public static OperationMXBean get(Operation operation) {
+		return METRICS[operation.ordinal()];
+	}
+
+	/**
+	 * Registers the MXBeans of the operations in the platform MBean server, if the
+	 * metrics are enabled and they are not registered yet
+	 */
+	public static synchronized void registerMBeans() {
+		if (!ENABLED) {
+			return;
+		}
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (Metrics metrics : METRICS) {
+			try {
+				ObjectName name = new ObjectName("floodit:type=EngineMetrics,operation=" + metrics.operation);
+				if (!server.isRegistered(name)) {
+					server.registerMBean(metrics, name);
+				}
+			} catch (JMException e) {
+				System.out.println("Could not register the metrics of " + metrics.operation + ": " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Writes a line per measured operation: count, mean and percentiles
+	 *
+	 * @return the summary
+	 */
+	public static String summary() {
+		StringBuilder summary = new StringBuilder();
+		for (Metrics metrics : METRICS) {
+			if (metrics.getCount() > 0) {
+				summary.append(String.format("%-5s %10d calls, mean %10.1f us, p50 %10.1f us, p99 %10.1f us, "
+						+ "max %10.1f us, %8.1f dots, %10.0f bytes per call%n", metrics.operation, metrics.getCount(),
+						metrics.getMeanNanos() / 1e3, metrics.getPercentileNanos(50) / 1e3,
+						metrics.getPercentileNanos(99) / 1e3, metrics.getMaxNanos() / 1e3,
+						(double) metrics.getDots() / metrics.getCount(),
+						(double) metrics.getAllocatedBytes() / metrics.getCount()));
+			}
+		}
+		return summary.toString();
+	}
+
+	/**
+	 * Index of the bucket of a value
+	 */
+	private static int bucketOf(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) Math.max(0, value);
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	/**
+	 * Largest value of a bucket
+	 */
+	private static long highestValueOf(int bucket) {
+		if (bucket < SUB_BUCKET_COUNT) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+		long lowest = (1L << exponent) | ((long) (bucket % SUB_BUCKET_COUNT) << (exponent - SUB_BUCKET_BITS));
+		return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+
+	/**
+	 * The metrics of an operation, as seen through JMX
+	 */
+	public interface OperationMXBean {
+
+		/**
+		 * @return the number of calls
+		 */
+		long getCount();
+
+		/**
+		 * @return the mean latency, in nanoseconds
+		 */
+		double getMeanNanos();
+
+		/**
+		 * @return the largest latency, in nanoseconds
+		 */
+		long getMaxNanos();
+
+		/**
+		 * @return the median latency, in nanoseconds
+		 */
+		long getMedianNanos();
+
+		/**
+		 * @return the 99th percentile of the latencies, in nanoseconds
+		 */
+		long getP99Nanos();
+
+		/**
+		 * @return the 99.9th percentile of the latencies, in nanoseconds
+		 */
+		long getP999Nanos();
+
+		/**
+		 * @param percentile
+		 *            the percentile, from 0 to 100
+		 * @return the latency under which this percentage of calls ran, in
+		 *         nanoseconds
+		 */
+		long getPercentileNanos(double percentile);
+
+		/**
+		 * @return the number of dots changed by all the calls
+		 */
+		long getDots();
+
+		/**
+		 * @return the bytes allocated by all the calls
+		 */
+		long getAllocatedBytes();
+
+		/**
+		 * Forgets every measure
+		 */
+		void reset();
+
+	}
+
+	/**
+	 * The counters of an operation. They are LongAdders, which spread the updates
+	 * of the threads over several cells summed when read, so engines running on
+	 * several cores do not contend for the same cache lines
+	 */
+	private static class Metrics implements OperationMXBean {
+
+		private final Operation operation;
+		private final LongAdder[] buckets;
+		private final LongAdder count;
+		private final LongAdder totalNanos;
+		private final LongAccumulator maxNanos;
+		private final LongAdder dots;
+		private final LongAdder allocatedBytes;
+
+		private Metrics(Operation operation) {
+			this.operation = operation;
+			buckets = new LongAdder[NUMBER_OF_BUCKETS];
+			for (int bucket = 0; bucket < NUMBER_OF_BUCKETS; bucket++) {
+				buckets[bucket] = new LongAdder();
+			}
+			count = new LongAdder();
+			totalNanos = new LongAdder();
+			maxNanos = new LongAccumulator(Math::max, 0);
+			dots = new LongAdder();
+			allocatedBytes = new LongAdder();
+		}
+
+		private void record(long latency, int changedDots, long allocated) {
+			buckets[bucketOf(latency)].increment();
+			count.increment();
+			totalNanos.add(latency);
+			maxNanos.accumulate(latency);
+			dots.add(changedDots);
+			allocatedBytes.add(allocated);
+		}
+
+		public long getCount() {
+			return count.sum();
+		}
+
+		public double getMeanNanos() {
+			long calls = count.sum();
+			return (calls == 0 ? 0 : (double) totalNanos.sum() / calls);
+		}
+
+		public long getMaxNanos() {
+			return maxNanos.get();
+		}
+
+		public long getMedianNanos() {
+			return getPercentileNanos(50);
+		}
+
+		public long getP99Nanos() {
+			return getPercentileNanos(99);
+		}
+
+		public long getP999Nanos() {
+			return getPercentileNanos(99.9);
+		}
+
+		public long getPercentileNanos(double percentile) {
+			long total = 0;
+			for (int bucket = 0; bucket < NUMBER_OF_BUCKETS; bucket++) {
+				total += buckets[bucket].sum();
+			}
+			if (total == 0) {
+				return 0;
+			}
+
+			long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100));
+			long seen = 0;
+			for (int bucket = 0; bucket < NUMBER_OF_BUCKETS; bucket++) {
+				seen += buckets[bucket].sum();
+				if (seen >= rank) {
+					return Math.min(highestValueOf(bucket), maxNanos.get());
+				}
+			}
+			return maxNanos.get();
+		}
+
+		public long getDots() {
+			return dots.sum();
+		}
+
+		public long getAllocatedBytes() {
+			return allocatedBytes.sum();
+		}
+
+		public void reset() {
+			for (LongAdder bucket : buckets) {
+				bucket.reset();
+			}
+			count.reset();
+			totalNanos.reset();
+			maxNanos.reset();
+			dots.reset();
+			allocatedBytes.reset();
+		}
+
+	}
+
+	/**
+	 * The JFR event of an operation, recorded only above its threshold since a
+	 * simulation plays many thousands of moves per second
+	 */
+	@Name("floodit.EngineOperation")
+	@Label("Engine Operation")
+	@Category("Flood It")
+	@Description("A move, undo, redo, clone, save or load of a game")
+	@Threshold("1 ms")
+	public static final class OperationEvent extends Event {
+
+		@Label("Operation")
+		private String operation;
+
+		@Label("Latency")
+		@Timespan(Timespan.NANOSECONDS)
+		private long latency;
+
+		@Label("Dots")
+		@Description("Number of dots captured or released")
+		private int dots;
+
+		@Label("Allocated")
+		@DataAmount
+		private long allocated;
+
+		@Label("Size")
+		private int size;
+
+		@Label("Rules")
+		private String rules;
+
+	}
+
+}
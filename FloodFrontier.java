@@ -0,0 +1,259 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The class <b>FloodFrontier</b> keeps the boundary of the captured region of a
+ * <b>GameModel</b>: every uncaptured dot that touches a captured dot is stored once,
+ * in the bucket of its own color. When the player selects a color, only the bucket
+ * of that color is expanded, so a move costs time proportional to the number of
+ * dots it captures instead of the size of the board.
+ *
+ * Adjacency comes from a shared <b>NeighborTable</b>, so dots are handled by
+ * index (i*size + j). Buckets are <b>IntStack</b>s that are drained and refilled
+ * in place, so once they have reached their working size a move allocates nothing.
+ *
+ * The frontier is rebuilt from scratch (one scan of the board) whenever it can no
+ * longer trust its buckets: the model or the rules changed, or dots were captured
+ * without going through the frontier (for instance the first dot of the game).
+ *
+ * From ParallelFlood.PARALLEL_SIZE on, and if the common fork-join pool has several
+ * threads, the moves are played on several cores by a <b>ParallelFlood</b> working
+ * on the same buckets.
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public class FloodFrontier {
+
+	/**
+	 * The model the frontier was built for
+	 */
+	private GameModel gameModel;
+
+	/**
+	 * The neighbours of every dot, for the size and rules the frontier was built with
+	 */
+	private NeighborTable neighborTable;
+	private boolean isPlane;
+	private boolean isOrthogonal;
+
+	/**
+	 * The number of captured dots the last time the frontier was synchronized
+	 */
+	private int numberCaptured;
+
+	/**
+	 * One bucket of uncaptured frontier dots per color
+	 */
+	private IntStack[] buckets;
+
+	/**
+	 * True if the dot at a given index is waiting in a bucket (or is about to be captured)
+	 */
+	private boolean[] inFrontier;
+
+	private boolean valid;
+
+	/**
+	 * Plays the moves on the large boards, null on the others
+	 */
+	private ParallelFlood parallelFlood;
+
+	/**
+	 * Indices of the dots captured since the last call to takeCapturedDots
+	 */
+	private IntStack capturedDots;
+
+	/**
+	 * Constructor
+	 *
+	 * @param gameModel
+	 *            the model on which the frontier operates
+	 */
+	public FloodFrontier(GameModel gameModel) {
+		this.gameModel = gameModel;
+		valid = false;
+		capturedDots = new IntStack();
+	}
+
+	/**
+	 * Attaches the frontier to a (possibly new) model. The buckets will be rebuilt
+	 * on the next flood.
+	 *
+	 * @param gameModel
+	 *            the model on which the frontier operates
+	 */
+	public void setGameModel(GameModel gameModel) {
+		this.gameModel = gameModel;
+		invalidate();
+	}
+
+	/**
+	 * Forgets the current buckets. Must be called when the board of the model is
+	 * modified outside of the frontier (reset, undo, redo...)
+	 */
+	public void invalidate() {
+		valid = false;
+		capturedDots.clear();
+	}
+
+	/**
+	 * Captures a single dot, for instance the first dot of the game, and adds its
+	 * neighbours to the frontier
+	 *
+	 * @param index
+	 *            the index (i*size + j) of the dot
+	 */
+	public void capture(int index) {
+		if (!isSynchronized()) {
+			rebuild();
+		}
+
+		if (!gameModel.isCaptured(index)) {
+			gameModel.capture(index);
+			capturedDots.push(index);
+			pushAdjacentDots(index);
+		}
+
+		numberCaptured = gameModel.getNumberCaptured();
+	}
+
+	/**
+	 * Returns the indices of the dots captured through this frontier since the
+	 * last call, and starts a new record
+	 *
+	 * @return the indices of the captured dots, in capture order
+	 */
+	public int[] takeCapturedDots() {
+		int[] dots = capturedDots.toArray();
+		capturedDots.clear();
+		return dots;
+	}
+
+	/**
+	 * Counts the uncaptured dots of a color that touch the captured region
+	 *
+	 * @param color
+	 *            the color
+	 * @return the number of dots waiting in the bucket of that color
+	 */
+	public int getFrontierSize(int color) {
+		if (!isSynchronized()) {
+			rebuild();
+		}
+
+		return buckets[color].size();
+	}
+
+	/**
+	 * Captures every uncaptured dot of the current selected color that is connected
+	 * to the captured region. The Model is updated accordingly
+	 */
+	public void flood() {
+		if (!isSynchronized()) {
+			rebuild();
+		}
+
+		int color = gameModel.getCurrentSelectedColor();
+		if (color < 0 || color >= GameModel.NUMBER_OF_COLORS) {
+			return;
+		}
+
+		if (parallelFlood != null) {
+			parallelFlood.flood(color, buckets, capturedDots);
+			numberCaptured = gameModel.getNumberCaptured();
+			return;
+		}
+
+		// The whole bucket of that color is captured, so it is the work list:
+		// the new neighbours of that color are pushed back on it
+		IntStack floodStack = buckets[color];
+		while (!floodStack.isEmpty()) {
+			int index = floodStack.pop();
+			inFrontier[index] = false;
+
+			if (!gameModel.isCaptured(index)) {
+				gameModel.capture(index);
+				capturedDots.push(index);
+				pushAdjacentDots(index);
+			}
+		}
+
+		numberCaptured = gameModel.getNumberCaptured();
+	}
+
+	/**
+	 * Checks if the buckets still describe the boundary of the captured region
+	 *
+	 * @return true if the frontier can be used as is
+	 */
+	private boolean isSynchronized() {
+		return valid
+				&& isPlane == gameModel.getIsPlane()
+				&& isOrthogonal == gameModel.getIsOrthogonal()
+				&& numberCaptured == gameModel.getNumberCaptured()
+				&& neighborTable.getSize() == gameModel.getSize();
+	}
+
+	/**
+	 * Rebuilds the buckets by scanning the whole board once. The storage of the
+	 * previous buckets is reused when the size did not change
+	 */
+	private void rebuild() {
+		int size = gameModel.getSize();
+
+		isPlane = gameModel.getIsPlane();
+		isOrthogonal = gameModel.getIsOrthogonal();
+		neighborTable = NeighborTable.getTable(size, isPlane, isOrthogonal);
+
+		if (inFrontier == null || inFrontier.length != size * size) {
+			inFrontier = new boolean[size * size];
+			buckets = new IntStack[GameModel.NUMBER_OF_COLORS];
+			for (int color = 0; color < GameModel.NUMBER_OF_COLORS; color++) {
+				buckets[color] = new IntStack();
+			}
+		} else {
+			Arrays.fill(inFrontier, false);
+			for (int color = 0; color < GameModel.NUMBER_OF_COLORS; color++) {
+				buckets[color].clear();
+			}
+		}
+
+		for (int index = 0; index < size * size; index++) {
+			if (gameModel.isCaptured(index)) {
+				pushAdjacentDots(index);
+			}
+		}
+
+		if (size < ParallelFlood.PARALLEL_SIZE || ForkJoinPool.getCommonPoolParallelism() < 2) {
+			parallelFlood = null;
+		} else if (parallelFlood == null || !parallelFlood.isFor(gameModel, neighborTable, inFrontier)) {
+			parallelFlood = new ParallelFlood(gameModel, neighborTable, inFrontier);
+		}
+
+		numberCaptured = gameModel.getNumberCaptured();
+		valid = true;
+	}
+
+	/**
+	 * Adds to the bucket of their color the uncaptured neighbours of a captured
+	 * dot that are not yet on the frontier. While flooding, the neighbours of the
+	 * flooding color thus land on the work list
+	 *
+	 * @param index
+	 *            the index of the captured dot
+	 */
+	private void pushAdjacentDots(int index) {
+		int[] neighbors = neighborTable.getNeighbors();
+		int degree = neighborTable.getDegree();
+
+		for (int k = index * degree; k < (index + 1) * degree; k++) {
+			int neighbor = neighbors[k];
+
+			if (neighbor >= 0 && !inFrontier[neighbor] && !gameModel.isCaptured(neighbor)) {
+				inFrontier[neighbor] = true;
+				buckets[gameModel.getColor(neighbor)].push(neighbor);
+			}
+		}
+	}
+
+}
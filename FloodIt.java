@@ -18,6 +18,8 @@ public class FloodIt {
      *            command line parameters
      */
      public static void main(String[] args) {
+    	// The icons are decoded while the game is loaded
+    	IconAtlas.preload();
     	StudentInfo.display();
     	 
 		// The size of the game can be passed as an argument. Handles invalid argument
@@ -35,6 +37,9 @@ public class FloodIt {
 		
 		// Sets up the MVC and starts the game
         GameController game = new GameController(size);
+
+        // The metrics of the engine, for jconsole or any JMX client
+        EngineMetrics.registerMBeans();
         
     }
 
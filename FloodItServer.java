@@ -0,0 +1,480 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The class <b>FloodItServer</b> hosts many games in one JVM, without any user
+ * interface: each TCP connection is a session with its own <b>GameEngine</b>,
+ * driven by a line protocol. The sessions share nothing but the engine metrics and
+ * the cache of the <b>NeighborTable</b>s, neither of them locked, so they never
+ * wait for each other.
+ *
+ * Each session runs on its own thread: a virtual thread when the JVM has them
+ * (Java 21 and later, found by reflection), otherwise a platform thread with a
+ * small stack.
+ *
+ * Each session holds a file descriptor, so the limit of the process has to be
+ * raised for thousands of sessions (ulimit -n, often 1024 by default). When it is
+ * reached, the server pauses ACCEPT_RETRY_DELAY between two attempts to accept,
+ * until sessions end, and reports the failures at most every
+ * ACCEPT_REPORT_INTERVAL.
+ *
+ * The protocol is one command per line, answered by one line:
+ *
+ * NEW size [seed] [rules] starts a game: GAME size seed rules
+ * SELECT row column selects the first dot (or plays the color of a dot)
+ * PLAY color plays a color, from 0 to 5
+ * UNDO and REDO
+ * these four answer OK steps captured, followed by WON once the game is finished,
+ * or NONE if nothing was played
+ * STATE gives the whole board: STATE size steps color, then the color shown by
+ * each dot, one digit per dot in row-major order
+ * DIFF gives the dots whose color changed since the last STATE or DIFF: DIFF count,
+ * then index:color for each of them (the index of the dot (i,j) is i*size + j)
+ * QUIT ends the session: BYE
+ *
+ * The commands and the answers are ASCII. An invalid command is answered by ERROR
+ * and a message, and the session goes on.
+ *
+ * Usage: java FloodItServer [port=7070] [host=localhost]
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public class FloodItServer {
+
+	public static final int DEFAULT_PORT = 7070;
+
+	/**
+	 * Largest board a session may create
+	 */
+	public static final int MAXIMUM_SIZE = 500;
+
+	/**
+	 * Connections waiting to be accepted, for the bursts of new sessions
+	 */
+	private static final int BACKLOG = 4096;
+
+	/**
+	 * Pause after a failed accept, in milliseconds, for instance when the process
+	 * is out of file descriptors
+	 */
+	private static final long ACCEPT_RETRY_DELAY = 100;
+
+	/**
+	 * Shortest time between two reports of failed accepts, in nanoseconds
+	 */
+	private static final long ACCEPT_REPORT_INTERVAL = 10000000000L;
+
+	/**
+	 * Stack of the platform threads of the sessions, when there are no virtual
+	 * threads
+	 */
+	private static final long SESSION_STACK_SIZE = 256 * 1024;
+
+	/**
+	 * Size of the buffers of a session, and longest command
+	 */
+	private static final int BUFFER_SIZE = 512;
+	private static final int MAXIMUM_LINE_LENGTH = 256;
+
+	private final ServerSocket serverSocket;
+	private final ExecutorService sessions;
+	private final AtomicInteger activeSessions;
+
+	/**
+	 * Sockets of the sessions in progress, closed by close to end them
+	 */
+	private final Set<Socket> clients;
+
+	/**
+	 * Constructor, opens the server socket
+	 *
+	 * @param host
+	 *            the address to listen on
+	 * @param port
+	 *            the port to listen on, 0 for any free port
+	 * @throws IOException
+	 *             if the socket cannot be opened
+	 */
+	public FloodItServer(InetAddress host, int port) throws IOException {
+		serverSocket = new ServerSocket(port, BACKLOG, host);
+		sessions = newThreadPerTaskExecutor("Session");
+		activeSessions = new AtomicInteger();
+		clients = ConcurrentHashMap.newKeySet();
+	}
+
+	/**
+	 * Creates an executor that runs every task on a new thread: a virtual thread if
+	 * the JVM has them, otherwise a daemon platform thread with a small stack
+	 *
+	 * @param name
+	 *            the prefix of the names of the platform threads
+	 * @return the executor
+	 */
+	public static ExecutorService newThreadPerTaskExecutor(String name) {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			// Before Java 21, or without the preview features of Java 19 and 20
+			AtomicInteger count = new AtomicInteger();
+			return Executors.newCachedThreadPool(task -> {
+				Thread thread = new Thread(null, task, name + " " + count.incrementAndGet(), SESSION_STACK_SIZE);
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Getter for the port the server listens on
+	 *
+	 * @return the port
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Getter for the number of sessions in progress
+	 *
+	 * @return the number of open connections
+	 */
+	public int getActiveSessions() {
+		return activeSessions.get();
+	}
+
+	/**
+	 * Accepts connections until the server is closed, starting a session for each
+	 * of them (on the calling thread)
+	 */
+	public void serve() {
+		long failures = 0;
+		long lastReport = 0;
+		while (!serverSocket.isClosed()) {
+			Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (SocketException e) {
+				// The server socket was closed
+				continue;
+			} catch (IOException e) {
+				// Reported now and then, not at every attempt
+				failures++;
+				if (failures == 1 || System.nanoTime() - lastReport > ACCEPT_REPORT_INTERVAL) {
+					lastReport = System.nanoTime();
+					System.out.println("Could not accept a connection: " + e.getMessage() + ", retrying every "
+							+ ACCEPT_RETRY_DELAY + " ms (failed accepts so far: " + failures + ")");
+				}
+				try {
+					Thread.sleep(ACCEPT_RETRY_DELAY);
+				} catch (InterruptedException interrupted) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+				continue;
+			}
+
+			try {
+				sessions.execute(() -> runSession(socket));
+			} catch (RejectedExecutionException e) {
+				// The server was closed
+				closeClient(socket);
+			}
+		}
+	}
+
+	/**
+	 * Stops accepting connections and ends the sessions, closing their sockets
+	 */
+	public void close() {
+		try {
+			serverSocket.close();
+		} catch (IOException e) {
+			System.out.println("Could not close the server: " + e.getMessage());
+		}
+		for (Socket client : clients) {
+			closeClient(client);
+		}
+		sessions.shutdownNow();
+	}
+
+	/**
+	 * Closes the socket of a session, which ends a read in progress
+	 */
+	private static void closeClient(Socket client) {
+		try {
+			client.close();
+		} catch (IOException e) {
+			// Already closed
+		}
+	}
+
+	/**
+	 * Runs a session until the client quits or disconnects, or the server is closed
+	 */
+	private void runSession(Socket socket) {
+		activeSessions.incrementAndGet();
+		clients.add(socket);
+		try (Socket client = socket) {
+			if (serverSocket.isClosed()) {
+				// close has already gone through the clients
+				return;
+			}
+			client.setTcpNoDelay(true);
+			Session session = new Session(new BufferedInputStream(client.getInputStream(), BUFFER_SIZE),
+					new BufferedOutputStream(client.getOutputStream(), BUFFER_SIZE));
+			session.run();
+		} catch (IOException e) {
+			// The client disconnected
+		} finally {
+			clients.remove(socket);
+			activeSessions.decrementAndGet();
+		}
+	}
+
+	/**
+	 * The game of a connection. Only used by the thread of the connection, whose
+	 * buffers are small and reused, so that many sessions hold little memory
+	 */
+	private static class Session {
+
+		private final InputStream in;
+		private final OutputStream out;
+
+		/**
+		 * The command being read, the answer being written and its bytes
+		 */
+		private final StringBuilder line;
+		private final StringBuilder reply;
+		private byte[] bytes;
+
+		private GameEngine gameEngine;
+
+		private Session(InputStream in, OutputStream out) {
+			this.in = in;
+			this.out = out;
+			line = new StringBuilder();
+			reply = new StringBuilder();
+			bytes = new byte[BUFFER_SIZE];
+		}
+
+		/**
+		 * Answers the commands until QUIT or the end of the connection
+		 */
+		private void run() throws IOException {
+			while (readLine()) {
+				reply.setLength(0);
+				if (line.length() > MAXIMUM_LINE_LENGTH) {
+					reply.append("ERROR Line too long");
+				}
+				boolean more = (reply.length() > 0 || handle(line.toString().trim()));
+				reply.append('\n');
+				send();
+				if (!more) {
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Reads a line in line, keeping at most MAXIMUM_LINE_LENGTH + 1 characters
+		 *
+		 * @return false at the end of the connection
+		 */
+		private boolean readLine() throws IOException {
+			line.setLength(0);
+			int c;
+			while ((c = in.read()) != '\n') {
+				if (c < 0) {
+					return false;
+				}
+				if (line.length() <= MAXIMUM_LINE_LENGTH) {
+					line.append((char) c);
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Sends the reply, as ASCII
+		 */
+		private void send() throws IOException {
+			int length = reply.length();
+			if (bytes.length < length) {
+				bytes = new byte[Math.max(length, 2 * bytes.length)];
+			}
+			for (int k = 0; k < length; k++) {
+				bytes[k] = (byte) reply.charAt(k);
+			}
+			out.write(bytes, 0, length);
+			out.flush();
+		}
+
+		/**
+		 * Answers a command in reply
+		 *
+		 * @return false if the session ends
+		 */
+		private boolean handle(String command) {
+			String[] words = command.split("\\s+");
+			String name = words[0].toUpperCase(Locale.ROOT);
+
+			try {
+				if (name.equals("QUIT")) {
+					reply.append("BYE");
+					return false;
+				} else if (name.equals("NEW")) {
+					newGame(words);
+				} else if (gameEngine == null) {
+					reply.append("ERROR No game, send NEW first");
+				} else if (name.equals("SELECT")) {
+					int row = Integer.parseInt(words[1]);
+					int column = Integer.parseInt(words[2]);
+					if (row < 0 || row >= gameEngine.getGameModel().getSize() || column < 0
+							|| column >= gameEngine.getGameModel().getSize()) {
+						throw new IllegalArgumentException("Invalid dot " + row + " " + column);
+					}
+					writeMove(gameEngine.selectDot(row, column));
+				} else if (name.equals("PLAY")) {
+					writeMove(gameEngine.play(Integer.parseInt(words[1])));
+				} else if (name.equals("UNDO")) {
+					writeMove(gameEngine.undo());
+				} else if (name.equals("REDO")) {
+					writeMove(gameEngine.redo());
+				} else if (name.equals("STATE")) {
+					writeState();
+				} else if (name.equals("DIFF")) {
+					writeDiff();
+				} else {
+					reply.append("ERROR Unknown command ").append(words[0]);
+				}
+			} catch (ArrayIndexOutOfBoundsException e) {
+				reply.setLength(0);
+				reply.append("ERROR Missing parameter");
+			} catch (IllegalArgumentException | IllegalStateException e) {
+				reply.setLength(0);
+				reply.append("ERROR ").append(e.getMessage());
+			}
+			return true;
+		}
+
+		/**
+		 * NEW size [seed] [rules]
+		 */
+		private void newGame(String[] words) {
+			int size = Integer.parseInt(words[1]);
+			if (size < 2 || size > MAXIMUM_SIZE) {
+				throw new IllegalArgumentException("Invalid size " + size);
+			}
+			long seed = (words.length > 2 ? Long.parseLong(words[2]) : ThreadLocalRandom.current().nextLong());
+			GameRules rules = (words.length > 3 ? GameRules.valueOf(words[3].toUpperCase(Locale.ROOT))
+					: GameRules.PLANE_ORTHOGONAL);
+
+			if (gameEngine == null) {
+				gameEngine = new GameEngine(size, seed, rules);
+			} else {
+				gameEngine.newGame(size, seed, rules);
+			}
+			reply.append("GAME ").append(size).append(' ').append(seed).append(' ').append(rules);
+		}
+
+		/**
+		 * OK steps captured [WON], or NONE
+		 */
+		private void writeMove(boolean played) {
+			if (!played) {
+				reply.append("NONE");
+				return;
+			}
+			reply.append("OK ").append(gameEngine.getNumberOfSteps()).append(' ')
+					.append(gameEngine.getGameModel().getNumberCaptured());
+			if (gameEngine.isFinished()) {
+				reply.append(" WON");
+			}
+		}
+
+		/**
+		 * STATE size steps color digits
+		 */
+		private void writeState() {
+			GameModel gameModel = gameEngine.getGameModel();
+			int numberOfDots = gameModel.getSize() * gameModel.getSize();
+			gameEngine.takeChangedDots();
+
+			reply.append("STATE ").append(gameModel.getSize()).append(' ').append(gameModel.getNumberOfSteps())
+					.append(' ').append(gameModel.getCurrentSelectedColor()).append(' ');
+			for (int index = 0; index < numberOfDots; index++) {
+				reply.append((char) ('0' + gameModel.getColor(index)));
+			}
+		}
+
+		/**
+		 * DIFF count index:color...
+		 */
+		private void writeDiff() {
+			GameModel gameModel = gameEngine.getGameModel();
+			int[] dots = gameEngine.takeChangedDots();
+
+			reply.append("DIFF ").append(dots.length);
+			for (int index : dots) {
+				reply.append(' ').append(index).append(':').append(gameModel.getColor(index));
+			}
+		}
+
+	}
+
+	/**
+	 * <b>main</b> of the server. The parameters are given as name=value
+	 *
+	 * @param args
+	 *            command line parameters
+	 */
+	public static void main(String[] args) {
+		int port = DEFAULT_PORT;
+		String host = "localhost";
+
+		try {
+			for (String arg : args) {
+				String[] parameter = arg.split("=", 2);
+				String value = (parameter.length == 2 ? parameter[1] : "");
+
+				if (parameter[0].equals("port")) {
+					port = Integer.parseInt(value);
+				} else if (parameter[0].equals("host")) {
+					host = value;
+				} else {
+					System.out.println("Unknown parameter " + arg);
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			System.out.println("Invalid argument: " + e.getMessage());
+			return;
+		}
+
+		try {
+			FloodItServer server = new FloodItServer(InetAddress.getByName(host), port);
+			EngineMetrics.registerMBeans();
+			System.out.println("Flood it server listening on " + host + ":" + server.getPort());
+			server.serve();
+		} catch (IOException e) {
+			System.out.println("Could not start the server: " + e.getMessage());
+		}
+	}
+
+}
@@ -1,10 +1,14 @@
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
 import javax.swing.*;
 
@@ -13,6 +17,15 @@ import javax.swing.*;
  * The class <b>GameController</b> is the controller of the game. It has a method
  * <b>selectColor</b> which is called by the view when the player selects the next
  * color. It then computesthe next step of the game, and  updates model and view.
+ * The logic of the game itself is delegated to a <b>GameEngine</b>, which does not
+ * depend on Swing.
+ *
+ * The engine runs on its own thread: every action of the player, the loading and
+ * the saving of the game are queued there, in the order of the clicks, so the
+ * event dispatch thread never waits for a flood. The view is given immutable
+ * snapshots of the game. A new snapshot is only made once the view has shown the
+ * previous one, so the actions played meanwhile are shown together. A reset
+ * cancels the actions queued before it.
  *
  * @author Guy-Vincent Jourdan, University of Ottawa
  * @author Jérémie Beaudoin-Dion
@@ -22,18 +35,66 @@ import javax.swing.*;
 public class GameController implements ActionListener {
 
 	/**
-	 * Reference to the view of the board
+	 * The snapshot of the saved game and the journal of the moves played since,
+	 * and the file written by the previous versions
 	 */
-	private GameView gameView;
+	private static final Path SAVED_GAME = Paths.get("savedGame.flood");
+	private static final Path JOURNAL = Paths.get("savedGame.journal");
+	private static final Path SERIALIZED_GAME = Paths.get("savedGame.ser");
+
+	/**
+	 * The replay of the last finished game
+	 */
+	private static final Path LAST_REPLAY = Paths.get("lastGame.replay");
+
 	/**
-	 * Reference to the model of the game
+	 * The number of moves looked ahead by the hints: two keep them well under a
+	 * millisecond on a board of 200x200
 	 */
-	private GameModel gameModel;
+	private static final int HINT_LOOKAHEAD = 2;
 
+	/**
+	 * Reference to the view of the board, and the rules selected in the settings
+	 * (only used on the event dispatch thread)
+	 */
+	private GameView gameView;
 	private MessagePane messagePane;
+	private GameRules rules;
 
-	private Stack<GameModel> undoStack;
-	private Stack<GameModel> redoStack;
+	/**
+	 * The logic of the game (only used on the engine thread)
+	 */
+	private GameEngine gameEngine;
+
+	/**
+	 * Saves the game after every action (only used on the engine thread)
+	 */
+	private MoveJournal moveJournal;
+
+	/**
+	 * The thread of the engine
+	 */
+	private final ExecutorService engineThread;
+
+	/**
+	 * Incremented by every reset: the actions queued before it are skipped
+	 */
+	private final AtomicInteger generation;
+
+	/**
+	 * Set while a snapshot waits to be shown by the view. On the engine thread,
+	 * changed tells that the game changed since the last snapshot, and won that
+	 * the game was won since
+	 */
+	private final AtomicBoolean snapshotPending;
+	private boolean changed;
+	private boolean won;
+
+	/**
+	 * The hint to show with the next snapshot, -1 if none (only used on the
+	 * engine thread)
+	 */
+	private int hint;
 
 	/**
 	 * Constructor used for initializing the controller. It creates the game's view 
@@ -43,50 +104,116 @@ public class GameController implements ActionListener {
 	 *            the size of the board on which the game will be played
 	 */
 	public GameController(int size) {
-		if(!loadGameModel()){
-			gameModel = new GameModel(size);
-		}
-		gameView = new GameView(gameModel, this);
-		messagePane = new MessagePane(this, gameView);
+		engineThread = Executors.newSingleThreadExecutor(task -> new Thread(task, "Game engine"));
+		generation = new AtomicInteger();
+		snapshotPending = new AtomicBoolean();
+		hint = -1;
+		moveJournal = new MoveJournal(SAVED_GAME, JOURNAL);
+
+		engineThread.execute(() -> {
+			if(!loadGame()){
+				gameEngine = new GameEngine(new GameModel(size));
+			}
+			moveJournal.compact(gameEngine.getGameModel());
+
+			GameSnapshot snapshot = gameEngine.snapshot();
+			SwingUtilities.invokeLater(() -> createView(snapshot));
+		});
+	}
 
-		undoStack = new GenericLinkedStack<GameModel>();
-		redoStack = new GenericLinkedStack<GameModel>();
+	/**
+	 * Creates the view, once the game is loaded
+	 */
+	private void createView(GameSnapshot snapshot) {
+		rules = snapshot.getRules();
+		gameView = new GameView(snapshot, this);
+		messagePane = new MessagePane(this, gameView);
 
-		flood();
-		gameView.update(gameModel);
+		gameView.update(snapshot);
 	}
 
 	/**
-	 * Reads the gameModel from a file
+	 * Restores the saved game: its last snapshot and the moves played since. A
+	 * game saved by a previous version is imported once, converted to the new
+	 * format
 	 */
-	private boolean loadGameModel() {
+	private boolean loadGame() {
 		try {
-			FileInputStream file = new FileInputStream("savedGame.ser");
-			ObjectInputStream saved = new ObjectInputStream(file);
-			gameModel = (GameModel) saved.readObject();
-			saved.close();
-			file.close();
-			return true;
-		}catch(IOException i) {
-			// The file is not found
-			return false;
-		} catch (ClassNotFoundException e) {
-			// TODO Auto-generated catch block
-			System.out.println("GameModel class not found");
-			e.printStackTrace();
+			if (Files.exists(SERIALIZED_GAME) && !Files.exists(SAVED_GAME)) {
+				SaveFile.save(SaveFile.importSerialized(SERIALIZED_GAME), SAVED_GAME);
+				Files.delete(SERIALIZED_GAME);
+			}
+
+			gameEngine = moveJournal.restore();
+			return gameEngine != null;
+		} catch (IOException e) {
+			System.out.println("Could not load the saved game: " + e.getMessage());
 			return false;
 		}
 	}
 
 	/**
-	 * resets the game
+	 * resets the game, cancelling the actions not played yet
 	 */
 	public void reset(){
-		gameModel.reset();
-		undoStack = new GenericLinkedStack<GameModel>();
-		redoStack = new GenericLinkedStack<GameModel>();
-		flood();
-		gameView.update(gameModel);
+		generation.incrementAndGet();
+		submit(() -> {
+			gameEngine.reset();
+			moveJournal.compact(gameEngine.getGameModel());
+			won = false;
+			return true;
+		});
+	}
+
+	/**
+	 * Queues an action on the engine thread. It is skipped if the game is reset
+	 * before it runs
+	 *
+	 * @param action
+	 *            the action, which returns true if it changed the game
+	 */
+	private void submit(BooleanSupplier action) {
+		int submitted = generation.get();
+		engineThread.execute(() -> {
+			if (submitted == generation.get() && action.getAsBoolean()) {
+				changed = true;
+				hint = -1;
+				publish();
+			}
+		});
+	}
+
+	/**
+	 * Sends a snapshot of the game to the view, unless it has not shown the
+	 * previous one yet (on the engine thread)
+	 */
+	private void publish() {
+		if (!changed || !snapshotPending.compareAndSet(false, true)) {
+			return;
+		}
+
+		changed = false;
+		boolean showWin = won;
+		won = false;
+		int showHint = hint;
+		hint = -1;
+		GameSnapshot snapshot = gameEngine.snapshot();
+		SwingUtilities.invokeLater(() -> show(snapshot, showWin, showHint));
+	}
+
+	/**
+	 * Shows a snapshot, then lets the engine send the next one (on the event
+	 * dispatch thread)
+	 */
+	private void show(GameSnapshot snapshot, boolean showWin, int showHint) {
+		gameView.update(snapshot);
+		gameView.showHint(showHint);
+		snapshotPending.set(false);
+		engineThread.execute(this::publish);
+
+		if (showWin) {
+			showWinOptionPane(snapshot);
+		}
 	}
 
 	/**
@@ -102,6 +229,11 @@ public class GameController implements ActionListener {
 		if (e.getSource() instanceof DotButton) {
 			handleDotButtonAction((DotButton) e.getSource());
 			
+		} else if (e.getSource() instanceof BoardCanvas) {
+			// A click on a large board
+			BoardCanvas boardCanvas = (BoardCanvas) e.getSource();
+			handleDotAction(boardCanvas.getRow(), boardCanvas.getColumn());
+
 
 		} else if (e.getSource() instanceof JRadioButton) {
 			// A radio button changes the messagePane
@@ -121,22 +253,33 @@ public class GameController implements ActionListener {
 	* @param the button on which the action was made
 	*/
 	private void handleJRadioButtonAction(JRadioButton clicked){
+		GameRules newRules = rules;
+
 		if (clicked.getText().equals("Plane")){
-			gameModel.setIsPlane(true);
+			newRules = GameRules.of(true, rules.isOrthogonal());
 			messagePane.setPlaneButtonValue(true);
 
 		} else if (clicked.getText().equals("Torus")){
-			gameModel.setIsPlane(false);
+			newRules = GameRules.of(false, rules.isOrthogonal());
 			messagePane.setPlaneButtonValue(false);
 
 		} else if (clicked.getText().equals("Diagonal")){
-			gameModel.setIsOrthogonal(false);
+			newRules = GameRules.of(rules.isPlane(), false);
 			messagePane.setOrthogonalButtonValue(false);
 
 		} else if (clicked.getText().equals("Orthogonal")){
-			gameModel.setIsOrthogonal(true);
+			newRules = GameRules.of(rules.isPlane(), true);
 			messagePane.setOrthogonalButtonValue(true);
 		}
+
+		if (newRules != rules) {
+			GameRules selected = newRules;
+			rules = newRules;
+			engineThread.execute(() -> {
+				gameEngine.setRules(selected);
+				moveJournal.recordRules(gameEngine.getGameModel());
+			});
+		}
 	}
 	
 	/**
@@ -146,108 +289,153 @@ public class GameController implements ActionListener {
 	*/
 	private void handleJButtonAction(JButton clicked){
 		if (clicked.getText().equals("Quit")) {
-			saveGameModel();
-			System.exit(0);
+			// After the actions already queued
+			engineThread.execute(() -> {
+				saveGameModel();
+				System.exit(0);
+			});
 		} else if (clicked.getText().equals("Reset")){
 			reset();
 		} else if (clicked.getText().equals("Undo")){
-			if(!undoStack.isEmpty()){
-				redoStack.push(gameModel.clone());
-				gameModel = undoStack.pop();
-				gameView.update(gameModel);
-			}
+			submit(() -> {
+				if(gameEngine.undo()){
+					moveJournal.recordUndo(gameEngine.getGameModel());
+					return true;
+				}
+				return false;
+			});
 		} else if (clicked.getText().equals("Redo")){
-			if(!redoStack.isEmpty()){
-				undoStack.push(gameModel.clone());
-				gameModel = redoStack.pop();
-				gameView.update(gameModel);
-			}
+			submit(() -> {
+				if(gameEngine.redo()){
+					moveJournal.recordRedo(gameEngine.getGameModel());
+					return true;
+				}
+				return false;
+			});
+		} else if (clicked.getText().equals("Hint")){
+			showHint();
 		} else if (clicked.getText().equals("Settings")){
-			gameView.update(gameModel);
-			messagePane.setPlaneButtonValue(gameModel.getIsPlane());
-			messagePane.setOrthogonalButtonValue(gameModel.getIsOrthogonal());
+			messagePane.setPlaneButtonValue(rules.isPlane());
+			messagePane.setOrthogonalButtonValue(rules.isOrthogonal());
 			messagePane.showMessage();
 		}
 	}
 	
 	/**
-	 * Saves the gameModel in a file
+	 * Computes a hint after the actions already queued, and shows it once the view
+	 * shows the game it was computed for (with the next snapshot if that one is not
+	 * sent yet)
+	 */
+	private void showHint() {
+		int submitted = generation.get();
+		engineThread.execute(() -> {
+			if (submitted != generation.get()) {
+				return;
+			}
+			int color = gameEngine.getHint(HINT_LOOKAHEAD);
+			if (changed) {
+				// The game it was computed for is not sent yet
+				hint = color;
+			} else {
+				SwingUtilities.invokeLater(() -> gameView.showHint(color));
+			}
+		});
+	}
+
+	/**
+	 * Saves the gameModel in a file, as a new snapshot with an empty journal (on
+	 * the engine thread)
 	 */
 	private void saveGameModel() {
-		try {
-        	FileOutputStream fileOut = new FileOutputStream("savedGame.ser");
-        	ObjectOutputStream out = new ObjectOutputStream(fileOut);
-            out.writeObject(gameModel);
-            out.close();
-            fileOut.close();
-        } catch(IOException i) {
-        	i.printStackTrace();
-        }
+		moveJournal.compact(gameEngine.getGameModel());
+		moveJournal.close();
 	}
 
 	/**
-	* Handles a DotButton action
+	* Handles a DotButton action: the first dot is captured if the game has not
+	* started, then the color of the button is played
 	*
 	* @param the button on which the action was made
 	*/
 	private void handleDotButtonAction(DotButton button){
-		redoStack = new GenericLinkedStack<GameModel>();
-		captureFirstDot(button); // handles condition and capture first dot if necessary
-		selectColor(button.getColor());
-		gameView.update(gameModel);
+		handleDotAction(button.getRow(), button.getColumn());
 	}
-	
+
 	/**
-	 * If necessary, capture the first dot of the gameModel
-	 *
-	 * @param: the button to capture
-	 */
-	private void captureFirstDot(DotButton button) {
-		// Condition to capture first dot: numberOfSteps <= -1
-		if (gameModel.getNumberOfSteps() < 0) {
-			undoStack.push(gameModel.clone());
-			gameModel.capture(button.getRow(), button.getColumn());
-		}
+	* Handles the selection of a dot, on a DotButton or on a BoardCanvas
+	*
+	* @param row
+	*            the row of the dot
+	* @param column
+	*            the column of the dot
+	*/
+	private void handleDotAction(int row, int column){
+		submit(() -> {
+			if(gameEngine.selectDot(row, column)){
+				moveJournal.recordSelect(row, column, gameEngine.getGameModel());
+				checkFinished();
+				return true;
+			}
+			return false;
+		});
 	}
 	
 	/**
 	 * <b>selectColor</b> is the method called when the user selects a new color.
-	 * If that color is not the currently selected one, then it applies the logic
-	 * of the game to capture possible locations. It then checks if the game
+	 * If that color is not the currently selected one, then the engine applies the 
+	 * logic of the game to capture possible locations. It then checks if the game
 	 * is finished, and if so, congratulates the player, showing the number of
 	 * moves, and gives to options: start a new game, or exit
 	 * @param color
 	 *            the newly selected color
 	 */
 	public void selectColor(int color){
-		if(color != gameModel.getCurrentSelectedColor()) {
-			// If captureFirstDot, don't remember gameModel
-			if(gameModel.getNumberOfSteps() > 0){
-				undoStack.push(gameModel.clone());
+		submit(() -> {
+			if(gameEngine.isStarted() && gameEngine.play(color)) {
+				moveJournal.recordPlay(gameEngine.getGameModel());
+				checkFinished();
+				return true;
 			}
-			
-			gameModel.setCurrentSelectedColor(color);
-			flood();
-			gameModel.step();
+			return false;
+		});
+	}
 
-			// Finish the game
-			if(gameModel.isFinished()) {
-				showWinOptionPane();
-			}
-		}        
+	/**
+	 * Finish the game if every dot is captured: the replay is saved, and the
+	 * view congratulates the player with the next snapshot (on the engine thread)
+	 */
+	private void checkFinished() {
+		if(gameEngine.isFinished()) {
+			saveReplay();
+			won = true;
+		}
+	}
+
+	/**
+	 * Saves the replay of the game, if it can be replayed from its seed
+	 */
+	private void saveReplay() {
+		try {
+			gameEngine.getReplay().save(LAST_REPLAY);
+		} catch (IllegalStateException e) {
+			// A game loaded in progress, or whose rules changed, has no replay
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
 	}
 
 	/**
 	 * Creates an option pane dialog if the game is finished
+	 *
+	 * @param snapshot
+	 *            the finished game, already shown by the view
 	 */
-	private void showWinOptionPane() {
-		// Update before showing the win condition
-		gameView.update(gameModel);
+	private void showWinOptionPane(GameSnapshot snapshot) {
 		// Create the JOptionPane
 		Object[] options = {"Play Again",
 		"Quit"};
 		int n = JOptionPane.showOptionDialog(gameView,
-				"Congratulations, you won in " + gameModel.getNumberOfSteps() 
+				"Congratulations, you won in " + snapshot.getNumberOfSteps() 
 				+" steps!\n Would you like to play again?",
 				"Won",
 				JOptionPane.YES_NO_OPTION,
@@ -263,163 +451,4 @@ public class GameController implements ActionListener {
 		}  
 	}
 
-	/**
-	 * <b>flood</b> is the method that computes which new dots should be ``captured'' 
-	 * when a new color has been selected. The Model is updated accordingly
-	 */
-	private void flood() {
-
-		Stack<DotInfo> floodStack = findAllCapturedDots();
-		Stack<DotInfo> adjacentDots;
-
-		DotInfo currentDot;
-		while(!floodStack.isEmpty()){
-			currentDot = floodStack.pop();
-
-			adjacentDots = findAllAdjacentDots(currentDot);
-
-			while(!adjacentDots.isEmpty()){
-				floodStack.push(adjacentDots.pop());
-			}
-
-		}
-	}
-
-	/**
-	 * Finds all the captured dots of the game model and returns them in a stack
-	 * 
-	 * @return
-	 */
-	private Stack<DotInfo> findAllCapturedDots() {
-
-		Stack<DotInfo> floodStack = new GenericLinkedStack<DotInfo>();
-
-		for(int i =0; i < gameModel.getSize(); i++) {
-			for(int j =0; j < gameModel.getSize(); j++) {
-				if(gameModel.isCaptured(i,j)) {
-					floodStack.push(gameModel.get(i,j));
-				}
-			}
-		}
-
-		return floodStack;
-	}
-
-	/**
-	 * Finds all the adjacent dots from the parameter
-	 * 
-	 * @param dotInfo
-	 * @return: a stack with all the dots
-	 */
-	private Stack<DotInfo> findAllAdjacentDots(DotInfo dotInfo) {
-		Stack<DotInfo> stack = new GenericLinkedStack<DotInfo>();
-
-		Stack<Coordinate> adjacent = findAdjacentCoordonates(dotInfo.getX(), dotInfo.getY());
-		Coordinate coordonates;
-
-		while(!adjacent.isEmpty()){
-			coordonates = adjacent.pop();
-
-			if(shouldBeCaptured (coordonates.getX(), coordonates.getY())) {
-				gameModel.capture(coordonates.getX(), coordonates.getY());
-				stack.push(gameModel.get(coordonates.getX(), coordonates.getY()));
-			}
-		}
-
-		return stack;
-	}
-
-	/**
-	 * Finds all the coordinates that should be considered as adjacent
-	 * 
-	 * @return
-	 */
-	private Stack<Coordinate> findAdjacentCoordonates(int x, int y) {
-		Stack<Coordinate> adjacent = new GenericLinkedStack<Coordinate>();
-
-		if (gameModel.getIsPlane()){
-
-			// Orthogonal is always counted
-			if (x + 1 < gameModel.getSize()){
-				adjacent.push(new Coordinate(x + 1, y));
-			}
-			if (y + 1 < gameModel.getSize()){
-				adjacent.push(new Coordinate(x, y + 1));
-			}
-			if (x - 1 >= 0){
-				adjacent.push(new Coordinate(x - 1, y));
-			}
-			if (y - 1 >= 0){
-				adjacent.push(new Coordinate(x, y - 1));
-			}
-
-			// Checks the diagonals
-			if (!gameModel.getIsOrthogonal()){
-
-				if (x + 1 < gameModel.getSize()){
-					if (y + 1 < gameModel.getSize()){
-						adjacent.push(new Coordinate(x + 1, y + 1));
-					}
-					if (y - 1 >= 0){
-						adjacent.push(new Coordinate(x + 1, y - 1));
-					}
-				}
-
-				if (x - 1 >= 0){
-					if (y + 1 < gameModel.getSize()){
-						adjacent.push(new Coordinate(x - 1, y + 1));
-					}
-					if (y - 1 >= 0){
-						adjacent.push(new Coordinate(x - 1, y - 1));
-					}
-				}
-			}
-
-		} else {
-			// We are on a Torus mode
-			// Orthogonal is always counted
-			adjacent.push(new Coordinate((x + 1) % gameModel.getSize(), y));
-			adjacent.push(new Coordinate(positiveModulo((x - 1), gameModel.getSize()), y));
-			adjacent.push(new Coordinate(x, (y + 1) % gameModel.getSize()));
-			adjacent.push(new Coordinate(x, positiveModulo((y - 1), gameModel.getSize())));
-
-			// Checks the diagonals
-			if (!gameModel.getIsOrthogonal()){
-				adjacent.push(new Coordinate((x + 1) % gameModel.getSize(), (y + 1) % gameModel.getSize()));
-				adjacent.push(new Coordinate((x + 1) % gameModel.getSize(), positiveModulo((y - 1), gameModel.getSize())));
-				adjacent.push(new Coordinate(positiveModulo((x - 1), gameModel.getSize()), (y + 1) % gameModel.getSize()));
-				adjacent.push(new Coordinate(positiveModulo((x - 1), gameModel.getSize()), positiveModulo((y - 1), gameModel.getSize())));
-			}
-		}
-		return adjacent;
-	}
-
-	/**
-	 * Java interestingly doesn't do modulo with negative numbers... 
-	 * to avoid writing too much code, here is a modulo that always returns 
-	 * a positive number.
-	 */
-	private int positiveModulo(int number, int modulo){
-		return (((number % modulo) + modulo) % modulo);
-	}
-
-	/**
-	 * <b>shouldBeCaptured</b> is a helper method that decides if the dot
-	 * located at position (i,j), which is next to a captured dot, should
-	 * itself be captured
-	 * @param i
-	 *            row of the dot
-	 * @param j
-	 *            column of the dot
-	 */
-	private boolean shouldBeCaptured(int i, int j) {
-		if(!gameModel.isCaptured(i, j) &&
-				(gameModel.getColor(i, j) == gameModel.getCurrentSelectedColor())) {
-			return true;
-		} else {
-			return false;
-		}
-	}
-
-
 }
@@ -0,0 +1,530 @@
+import java.util.Arrays;
+
+/**
+ * The class <b>GameEngine</b> holds the whole logic of a game, without any user
+ * interface: the model, the flood, the capture of the first dot, undo and redo,
+ * and the detection of the end of the game. The Swing <b>GameController</b>
+ * delegates to it, and it can be used alone (on a server, in a batch job...) since
+ * nothing here touches AWT or Swing.
+ *
+ * A game starts when its first dot is selected with <b>selectDot</b>; the color
+ * of that dot is played as the first move. The next moves are played with
+ * <b>play</b>.
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public class GameEngine implements SimulatedGame {
+
+	private GameModel gameModel;
+
+	/**
+	 * Boundary of the captured region, used to flood without scanning the board
+	 */
+	private FloodFrontier floodFrontier;
+
+	/**
+	 * The moves played since the last reset, to undo and redo them
+	 */
+	private MoveHistory moveHistory;
+
+	/**
+	 * The first dot and the colors played since, while the game can be replayed
+	 * from its seed; firstDot is -1 otherwise
+	 */
+	private int firstDot;
+	private IntStack playedColors;
+
+	/**
+	 * The captured dots, in the order they were captured, and the dots whose
+	 * displayed color changed since the last call to takeChangedDots (every dot
+	 * if allDotsChanged)
+	 */
+	private IntStack capturedOrder;
+	private IntStack changedDots;
+	private boolean allDotsChanged;
+
+	/**
+	 * The last snapshot, the next one only copies the dots changed since
+	 */
+	private GameSnapshot lastSnapshot;
+
+	/**
+	 * The hints of the game, created by the first call to getHint and then told
+	 * every move; null until then, and after anything it cannot follow
+	 */
+	private HintEngine hintEngine;
+
+	/**
+	 * Constructor, creates a new game
+	 *
+	 * @param size
+	 *            the size of the board
+	 * @param seed
+	 *            the seed of the random colors
+	 * @param rules
+	 *            the rules of the game
+	 */
+	public GameEngine(int size, long seed, GameRules rules) {
+		moveHistory = new MoveHistory();
+		playedColors = new IntStack();
+		capturedOrder = new IntStack();
+		changedDots = new IntStack();
+		newGame(size, seed, rules);
+	}
+
+	/**
+	 * Constructor, continues an existing game (for instance a saved one)
+	 *
+	 * @param gameModel
+	 *            the model of the game
+	 */
+	public GameEngine(GameModel gameModel) {
+		moveHistory = new MoveHistory();
+		playedColors = new IntStack();
+		capturedOrder = new IntStack();
+		changedDots = new IntStack();
+		setGameModel(gameModel);
+	}
+
+	/**
+	 * Starts a new game, forgetting the current one. A board of the same size is
+	 * refilled in place, with the storage of the moves
+	 *
+	 * @param size
+	 *            the size of the board
+	 * @param seed
+	 *            the seed of the random colors
+	 * @param rules
+	 *            the rules of the game
+	 */
+	public void newGame(int size, long seed, GameRules rules) {
+		if (gameModel != null && gameModel.getSize() == size) {
+			gameModel.reset(seed);
+			gameModel.setIsPlane(rules.isPlane());
+			gameModel.setIsOrthogonal(rules.isOrthogonal());
+			restart();
+			return;
+		}
+
+		GameModel model = new GameModel(size, seed);
+		model.setIsPlane(rules.isPlane());
+		model.setIsOrthogonal(rules.isOrthogonal());
+		setGameModel(model);
+	}
+
+	/**
+	 * Replaces the game by another one
+	 */
+	private void setGameModel(GameModel gameModel) {
+		this.gameModel = gameModel;
+		floodFrontier = new FloodFrontier(gameModel);
+		moveHistory.clear();
+		// The beginning of a game in progress is not known
+		firstDot = -1;
+		playedColors.clear();
+		hintEngine = null;
+		// A loaded game may have dots left to capture with its current color
+		floodFrontier.flood();
+		floodFrontier.takeCapturedDots();
+
+		capturedOrder.clear();
+		int numberOfDots = gameModel.getSize() * gameModel.getSize();
+		for (int index = 0; index < numberOfDots; index++) {
+			if (gameModel.isCaptured(index)) {
+				capturedOrder.push(index);
+			}
+		}
+		markAllDotsChanged();
+	}
+
+	/**
+	 * Restarts the game on a new random board of the same size and rules
+	 */
+	public void reset() {
+		gameModel.reset();
+		restart();
+	}
+
+	/**
+	 * Restarts the game on the board of the given seed, with the same size and rules
+	 *
+	 * @param seed
+	 *            the seed of the random colors
+	 */
+	public void reset(long seed) {
+		gameModel.reset(seed);
+		restart();
+	}
+
+	/**
+	 * Forgets the moves of the previous board
+	 */
+	private void restart() {
+		moveHistory.clear();
+		floodFrontier.invalidate();
+		firstDot = -1;
+		playedColors.clear();
+		hintEngine = null;
+		capturedOrder.clear();
+		markAllDotsChanged();
+	}
+
+	/**
+	 * Changes the rules of the game. They apply from the next move on
+	 *
+	 * @param rules
+	 *            the new rules
+	 */
+	public void setRules(GameRules rules) {
+		if (isStarted() && rules != getRules()) {
+			// A replay plays a whole game under the same rules
+			firstDot = -1;
+		}
+		if (rules != getRules()) {
+			// The regions depend on the rules
+			hintEngine = null;
+		}
+		gameModel.setIsPlane(rules.isPlane());
+		gameModel.setIsOrthogonal(rules.isOrthogonal());
+	}
+
+	/**
+	 * Getter for the rules of the game
+	 *
+	 * @return the rules
+	 */
+	public GameRules getRules() {
+		return GameRules.of(gameModel);
+	}
+
+	/**
+	 * Handles the selection of a dot by the player: if the game has not started,
+	 * the dot is captured as the first dot. Then its color is played.
+	 *
+	 * @param row
+	 *            the row of the dot
+	 * @param column
+	 *            the column of the dot
+	 * @return true if a move was played
+	 */
+	public boolean selectDot(int row, int column) {
+		int color = gameModel.getColor(row, column);
+
+		// Condition to capture first dot: numberOfSteps <= -1
+		if (gameModel.getNumberOfSteps() < 0) {
+			firstDot = row * gameModel.getSize() + column;
+			floodFrontier.capture(firstDot);
+		}
+
+		return selectColor(color);
+	}
+
+	/**
+	 * Plays a color. The game must have started (see <b>selectDot</b>)
+	 *
+	 * @param color
+	 *            the color to play
+	 * @return true if a move was played, false if the color was already selected
+	 */
+	public boolean play(int color) {
+		if (!isStarted()) {
+			throw new IllegalStateException("The first dot must be selected before playing a color");
+		}
+		if (color < 0 || color >= GameModel.NUMBER_OF_COLORS) {
+			throw new IllegalArgumentException("Invalid color " + color);
+		}
+
+		return selectColor(color);
+	}
+
+	/**
+	 * Applies the logic of the game for a new color and records the move
+	 */
+	private boolean selectColor(int color) {
+		if (color == gameModel.getCurrentSelectedColor()) {
+			return false;
+		}
+
+		long startTime = EngineMetrics.startTime();
+		EngineMetrics.OperationEvent event = EngineMetrics.startEvent();
+		long startAllocation = EngineMetrics.startAllocation();
+		int previousColor = gameModel.getCurrentSelectedColor();
+		int previousSteps = gameModel.getNumberOfSteps();
+
+		gameModel.setCurrentSelectedColor(color);
+		floodFrontier.flood();
+		gameModel.step();
+		int[] capturedDots = floodFrontier.takeCapturedDots();
+		moveHistory.record(previousColor, previousSteps, gameModel, capturedDots);
+		playedColors.push(color);
+		if (hintEngine != null) {
+			hintEngine.play(color);
+		}
+
+		// The dots captured before the move take its color; the new ones already had it
+		markChanged(capturedOrder.size());
+		for (int index : capturedDots) {
+			capturedOrder.push(index);
+		}
+
+		EngineMetrics.record(EngineMetrics.Operation.MOVE, startTime, startAllocation, event, capturedDots.length,
+				gameModel);
+		return true;
+	}
+
+	/**
+	 * Reverts the last move, if any
+	 *
+	 * @return true if a move was undone
+	 */
+	public boolean undo() {
+		if (!moveHistory.canUndo()) {
+			return false;
+		}
+
+		long startTime = EngineMetrics.startTime();
+		EngineMetrics.OperationEvent event = EngineMetrics.startEvent();
+		long startAllocation = EngineMetrics.startAllocation();
+		int[] capturedDots = moveHistory.undo(gameModel);
+		floodFrontier.invalidate();
+		playedColors.pop();
+		// The regions of the hints merged the dots captured by the move
+		hintEngine = null;
+
+		// The released dots show their own color, the one the move had given them
+		for (int k = 0; k < capturedDots.length; k++) {
+			capturedOrder.pop();
+		}
+		markChanged(capturedOrder.size());
+
+		EngineMetrics.record(EngineMetrics.Operation.UNDO, startTime, startAllocation, event, capturedDots.length,
+				gameModel);
+		return true;
+	}
+
+	/**
+	 * Plays again the last undone move, if any
+	 *
+	 * @return true if a move was redone
+	 */
+	public boolean redo() {
+		if (!moveHistory.canRedo()) {
+			return false;
+		}
+
+		long startTime = EngineMetrics.startTime();
+		EngineMetrics.OperationEvent event = EngineMetrics.startEvent();
+		long startAllocation = EngineMetrics.startAllocation();
+		int[] capturedDots = moveHistory.redo(gameModel);
+		floodFrontier.invalidate();
+		playedColors.push(gameModel.getCurrentSelectedColor());
+		if (hintEngine != null) {
+			hintEngine.play(gameModel.getCurrentSelectedColor());
+		}
+
+		markChanged(capturedOrder.size());
+		for (int index : capturedDots) {
+			capturedOrder.push(index);
+		}
+
+		EngineMetrics.record(EngineMetrics.Operation.REDO, startTime, startAllocation, event, capturedDots.length,
+				gameModel);
+		return true;
+	}
+
+	/**
+	 * Records that the first dots of capturedOrder changed color. Past the number
+	 * of dots of the board, every dot is considered changed, which bounds the work
+	 * and memory when nobody takes the changes (a game without a view)
+	 */
+	private void markChanged(int count) {
+		if (allDotsChanged) {
+			return;
+		}
+		if (changedDots.size() + count > gameModel.getSize() * gameModel.getSize()) {
+			markAllDotsChanged();
+			return;
+		}
+		for (int position = 0; position < count; position++) {
+			changedDots.push(capturedOrder.get(position));
+		}
+	}
+
+	/**
+	 * Records that the whole board changed (a new board, a loaded game)
+	 */
+	private void markAllDotsChanged() {
+		allDotsChanged = true;
+		changedDots.clear();
+	}
+
+	/**
+	 * Gives the dots whose displayed color (see GameModel.getColor) may have
+	 * changed since the last call, so a view only redraws those. A move changes
+	 * the dots captured before it: the dots it captures already had its color.
+	 * The changes are shared with snapshot: a caller uses one or the other.
+	 *
+	 * @return the indices (i*size + j) of the changed dots, in increasing order
+	 */
+	public int[] takeChangedDots() {
+		int[] dots;
+		if (allDotsChanged) {
+			dots = new int[gameModel.getSize() * gameModel.getSize()];
+			for (int index = 0; index < dots.length; index++) {
+				dots[index] = index;
+			}
+		} else {
+			// Sorted and without duplicates, so a view walks its dots in memory order
+			long[] changed = new long[(gameModel.getSize() * gameModel.getSize() + 63) >>> 6];
+			int count = 0;
+			for (int position = 0; position < changedDots.size(); position++) {
+				int index = changedDots.get(position);
+				long bit = 1L << index;
+				if ((changed[index >>> 6] & bit) == 0) {
+					changed[index >>> 6] |= bit;
+					count++;
+				}
+			}
+
+			dots = new int[count];
+			int next = 0;
+			for (int w = 0; w < changed.length; w++) {
+				long word = changed[w];
+				while (word != 0) {
+					dots[next++] = (w << 6) + Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+				}
+			}
+		}
+
+		changedDots.clear();
+		allDotsChanged = false;
+		return dots;
+	}
+
+	/**
+	 * Checks if the first dot was selected
+	 *
+	 * @return true if the game has started
+	 */
+	public boolean isStarted() {
+		return gameModel.getNumberOfSteps() >= 0;
+	}
+
+	/**
+	 * Checks if every dot was captured
+	 *
+	 * @return true if the game is finished
+	 */
+	public boolean isFinished() {
+		return gameModel.isFinished();
+	}
+
+	/**
+	 * Getter for the number of moves played
+	 *
+	 * @return the number of steps, -1 if the game has not started
+	 */
+	public int getNumberOfSteps() {
+		return gameModel.getNumberOfSteps();
+	}
+
+	/**
+	 * Getter for the current selected color
+	 *
+	 * @return the color of the captured region, -1 if the game has not started
+	 */
+	public int getCurrentSelectedColor() {
+		return gameModel.getCurrentSelectedColor();
+	}
+
+	/**
+	 * Counts the uncaptured dots of a color that touch the captured region, that
+	 * is the dots that playing this color would capture at least
+	 *
+	 * @param color
+	 *            the color
+	 * @return the number of frontier dots of that color
+	 */
+	public int getFrontierSize(int color) {
+		return floodFrontier.getFrontierSize(color);
+	}
+
+	/**
+	 * Suggests the color to play next. The first hint of a game builds its regions;
+	 * the next ones follow the moves and come in constant time for the greedy hint
+	 * (see <b>HintEngine</b>)
+	 *
+	 * @param lookahead
+	 *            the number of moves looked ahead, 1 for the color capturing the
+	 *            most dots, at most HintEngine.MAXIMUM_LOOKAHEAD
+	 * @return the color, or -1 if the game has not started or is finished
+	 */
+	public int getHint(int lookahead) {
+		if (!isStarted() || isFinished()) {
+			return -1;
+		}
+		if (hintEngine == null) {
+			hintEngine = new HintEngine(gameModel);
+		}
+		return hintEngine.getHint(lookahead);
+	}
+
+	/**
+	 * Records the game played so far, to play it again from its seed
+	 *
+	 * @return the replay of the game
+	 * @throws IllegalStateException
+	 *             if the game cannot be replayed: it has not started, its beginning
+	 *             is not known (a loaded game), its rules changed while it was
+	 *             played or its board was not generated from its seed
+	 */
+	public Replay getReplay() {
+		if (firstDot < 0 || playedColors.size() != gameModel.getNumberOfSteps() + 1) {
+			throw new IllegalStateException("The game cannot be replayed from its beginning");
+		}
+
+		if (!Arrays.equals(new GameModel(gameModel.getSize(), gameModel.getSeed()).getInitialColors(),
+				gameModel.getInitialColors())) {
+			throw new IllegalStateException("The board was not generated from its seed");
+		}
+
+		// The first color is the one of the first dot
+		int[] colors = playedColors.toArray();
+		byte[] moves = new byte[colors.length - 1];
+		for (int move = 1; move < colors.length; move++) {
+			moves[move - 1] = (byte) colors[move];
+		}
+
+		return new Replay(gameModel.getSize(), gameModel.getSeed(), getRules(),
+				firstDot / gameModel.getSize(), firstDot % gameModel.getSize(), moves);
+	}
+
+	/**
+	 * Copies the current state of the game. Only the dots changed since the
+	 * previous snapshot are read from the model; they are taken like with
+	 * takeChangedDots, and given by the snapshot
+	 *
+	 * @return an immutable snapshot
+	 */
+	public GameSnapshot snapshot() {
+		if (allDotsChanged || lastSnapshot == null || lastSnapshot.getSize() != gameModel.getSize()) {
+			changedDots.clear();
+			allDotsChanged = false;
+			lastSnapshot = new GameSnapshot(gameModel);
+		} else {
+			lastSnapshot = new GameSnapshot(lastSnapshot, gameModel, takeChangedDots());
+		}
+		return lastSnapshot;
+	}
+
+	/**
+	 * Getter for the model of the game. It must only be modified through the engine
+	 *
+	 * @return the model
+	 */
+	public GameModel getGameModel() {
+		return gameModel;
+	}
+
+}
@@ -1,4 +1,8 @@
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Random;
 
 /**
@@ -9,6 +13,10 @@ import java.util.Random;
  * - the number of steps since the last reset
  * - the current color of selection
  *
+ * The board is stored in packed form: one byte per dot for its initial color
+ * and one bit per dot for its captured flag, in row-major order (the dot
+ * (i,j) is at index i*sizeOfGame + j). No object is kept per dot.
+ *
  * The model provides all of this informations to the other classes trough 
  *  appropriate Getters. 
  * The controller can also update the model through Setters.
@@ -35,12 +43,23 @@ public class GameModel implements Cloneable, Serializable {
 	public static final int COLOR_5           = 5;
 	public static final int NUMBER_OF_COLORS  = 6;
 
+	/**
+	 * The linear congruential generator of java.util.Random
+	 */
+	private static final long LCG_MULTIPLIER = 0x5DEECE66DL;
+	private static final long LCG_ADDEND = 0xBL;
+	private static final long LCG_MASK = (1L << 48) - 1;
+
 	private int currentSelectedColor;  // The current selection color
 	private int sizeOfGame;  // The size of the game.
-	private DotInfo[][] model;  // A 2 dimentionnal array of sizeOfGame*sizeOfGame recording the state of each dot
+	private byte[] colors;  // The initial color of each dot, row-major
+	private long[] captured;  // One bit per dot, set if the dot is captured
 	private int numberOfSteps;  // The number of steps played since the last reset
 	private int numberCaptured;  // The number of captered dots
-	private Random generator;  // Random generator
+	private long seed;  // The seed the colors of the board were drawn from
+	private Random generator;  // Random generator, also draws the seeds of the next boards
+	private transient long generatorSeed;  // The seed last given to the generator, copied by clone
+	private transient long stateHash;  // Zobrist hash of the captured dots and the selected color
 
 	// Options on the game logic
 	private boolean isOrthogonal;
@@ -60,15 +79,87 @@ public class GameModel implements Cloneable, Serializable {
 		reset();
 	}
 
+	/**
+	 * Constructor to initialize the model to a given size of board. The colors
+	 * are drawn from a generator started with the given seed, so the same seed
+	 * always gives the same board.
+	 * 
+	 * @param size
+	 *            the size of the board
+	 * @param seed
+	 *            the seed of the random generator
+	 */
+	public GameModel(int size, long seed) {
+		generator = new Random();
+		sizeOfGame = size;
+		isOrthogonal = true;
+		isPlane = true;
+		reset(seed);
+	}
+
 	/**
 	 * Second constructeur pour créer une DeepCopy
 	 */
 	public GameModel(int currentSelectedColor, int sizeOfGame, DotInfo[][] model, int numberOfSteps, 
 			int numberCaptured, boolean isOrthogonal, boolean isPlane){
 
+		this(currentSelectedColor, sizeOfGame, new byte[sizeOfGame*sizeOfGame], 
+				new long[wordsFor(sizeOfGame*sizeOfGame)], numberOfSteps, numberCaptured, isOrthogonal, isPlane);
+
+		for(int i = 0; i < sizeOfGame; i++){
+			for(int j = 0; j < sizeOfGame; j++){
+				colors[i*sizeOfGame + j] = (byte) model[i][j].getColor();
+				if(model[i][j].isCaptured()){
+					setBit(captured, i*sizeOfGame + j);
+				}
+			}
+		}
+		stateHash = computeStateHash();
+	}
+
+	/**
+	 * Constructor used to load a saved game, takes ownership of the packed arrays
+	 * 
+	 * @param sizeOfGame
+	 *            the size of the board
+	 * @param seed
+	 *            the seed the colors were drawn from
+	 * @param colors
+	 *            the initial color of each dot, row-major
+	 * @param captured
+	 *            one bit per dot, set if the dot is captured
+	 * @param currentSelectedColor
+	 *            the current selection color
+	 * @param numberOfSteps
+	 *            the number of steps played, -1 if the game has not started
+	 * @param isOrthogonal
+	 *            the game logic of isOrthogonal
+	 * @param isPlane
+	 *            the game logic of isPlane
+	 */
+	public GameModel(int sizeOfGame, long seed, byte[] colors, long[] captured, int currentSelectedColor, 
+			int numberOfSteps, boolean isOrthogonal, boolean isPlane){
+
+		this(currentSelectedColor, sizeOfGame, colors, captured, numberOfSteps, 0, isOrthogonal, isPlane);
+
+		this.seed = seed;
+		seedGenerator(generator.nextLong());
+		for(long word : captured){
+			numberCaptured += Long.bitCount(word);
+		}
+		stateHash = computeStateHash();
+	}
+
+	/**
+	 * Constructor used by clone, takes ownership of the packed arrays
+	 */
+	private GameModel(int currentSelectedColor, int sizeOfGame, byte[] colors, long[] captured, 
+			int numberOfSteps, int numberCaptured, boolean isOrthogonal, boolean isPlane){
+
 		this.currentSelectedColor = currentSelectedColor;
 		this.sizeOfGame = sizeOfGame;
-		this.model = model;
+		this.colors = colors;
+		this.captured = captured;
 		this.numberOfSteps = numberOfSteps;
 		this.numberCaptured = numberCaptured;
 		this.isOrthogonal = isOrthogonal;
@@ -79,21 +170,78 @@ public class GameModel implements Cloneable, Serializable {
 
 	/**
 	 * Resets the model to (re)start a game. The previous game (if there is one)
-	 * is cleared up . 
+	 * is cleared up . The seed of the new board is drawn from the generator of
+	 * the previous one, so a sequence of games is reproducible too.
 	 */
 	public void reset(){
+		reset(generator.nextLong());
+	}
 
-		model = new DotInfo[sizeOfGame][sizeOfGame];
+	/**
+	 * Resets the model to (re)start a game on the board of the given seed. 
+	 * 
+	 * @param seed
+	 *            the seed of the random generator
+	 */
+	public void reset(long seed){
 
-		for(int i = 0; i < sizeOfGame; i++){
-			for(int j = 0; j < sizeOfGame; j++){
-				model[i][j] = new DotInfo(i,j,generator.nextInt(NUMBER_OF_COLORS));
-			}
+		this.seed = seed;
+		// The arrays of the previous board are refilled in place
+		if(colors == null || colors.length != sizeOfGame*sizeOfGame){
+			colors = new byte[sizeOfGame*sizeOfGame];
+			captured = new long[wordsFor(sizeOfGame*sizeOfGame)];
+		} else {
+			Arrays.fill(captured, 0);
 		}
+		drawColors(seed);
 
 		currentSelectedColor = -1;
 		numberOfSteps = -1;
 		numberCaptured = 0;
+		stateHash = colorKey(-1);
+	}
+
+	/**
+	 * Draws the colors of the board from a seed. They are the values of
+	 * generator.nextInt(NUMBER_OF_COLORS) after generator.setSeed(seed), so a seed
+	 * gives the same board as before, but the linear congruential generator of
+	 * java.util.Random is run in a local variable instead of its atomic field. The
+	 * generator is then left where these calls would have left it.
+	 */
+	private void drawColors(long seed){
+		long state = (seed ^ LCG_MULTIPLIER) & LCG_MASK;
+
+		for(int index = 0; index < colors.length; index++){
+			int bits;
+			int color;
+			do {
+				// Random.next(31), then the rejection of Random.nextInt(bound)
+				state = (state * LCG_MULTIPLIER + LCG_ADDEND) & LCG_MASK;
+				bits = (int) (state >>> 17);
+				color = bits % NUMBER_OF_COLORS;
+			} while(bits - color + (NUMBER_OF_COLORS - 1) < 0);
+			colors[index] = (byte) color;
+		}
+
+		seedGenerator(state ^ LCG_MULTIPLIER);
+	}
+
+	/**
+	 * Seeds the generator. The seed is kept because the state of a
+	 * java.util.Random cannot be read back, and clone gives it to the copy.
+	 */
+	private void seedGenerator(long seed){
+		generatorSeed = seed;
+		generator.setSeed(seed);
+	}
+
+	/**
+	 * Getter for the seed the colors of the board were drawn from
+	 * 
+	 * @return the seed, 0 if the board was not generated from a seed
+	 */
+	public long getSeed() {
+		return seed;
 	}
 
 	/**
@@ -155,10 +303,43 @@ public class GameModel implements Cloneable, Serializable {
 		if(isCaptured(i, j) && numberOfSteps >= 0) {
 			return currentSelectedColor;
 		} else {
-			return model[i][j].getColor();
+			return colors[i*sizeOfGame + j];
 		}
 	}
 
+	/**
+	 * returns the color of the dot at a given index (i*size + j)
+	 * 
+	 * @param index
+	 *            the index of the dot
+	 * @return the color of the dot
+	 */   
+	public int getColor(int index){
+		if(isCaptured(index) && numberOfSteps >= 0) {
+			return currentSelectedColor;
+		} else {
+			return colors[index];
+		}
+	}
+
+	/**
+	 * returns a copy of the initial colors of all the dots
+	 * 
+	 * @return one color per dot, row-major
+	 */   
+	public byte[] getInitialColors(){
+		return colors.clone();
+	}
+
+	/**
+	 * returns a copy of the captured flags of all the dots
+	 * 
+	 * @return one bit per dot, row-major, 64 dots per long
+	 */   
+	public long[] getCapturedBits(){
+		return captured.clone();
+	}
+
 	/**
 	 * returns true is the dot is captured, false otherwise
 	 * 
@@ -169,7 +350,18 @@ public class GameModel implements Cloneable, Serializable {
 	 * @return the status of the dot at location (i,j)
 	 */   
 	public boolean isCaptured(int i, int j){
-		return model[i][j].isCaptured();
+		return getBit(captured, i*sizeOfGame + j);
+	}
+
+	/**
+	 * returns true is the dot at a given index (i*size + j) is captured
+	 * 
+	 * @param index
+	 *            the index of the dot
+	 * @return the status of the dot
+	 */   
+	public boolean isCaptured(int index){
+		return getBit(captured, index);
 	}
 
 	/**
@@ -181,11 +373,70 @@ public class GameModel implements Cloneable, Serializable {
 	 *            the y coordinate of the dot
 	 */   
 	public void capture(int i, int j){
-		model[i][j].setCaptured(true);
+		capture(i*sizeOfGame + j);
+	}
+
+	/**
+	 * Sets the status of the dot at a given index (i*size + j) to captured
+	 * 
+	 * @param index
+	 *            the index of the dot
+	 */   
+	public void capture(int index){
+		setBit(captured, index);
 		numberCaptured++;
+		stateHash ^= dotKey(index);
+	}
+
+	/**
+	 * Sets the status of the dot at a given index (i*size + j) back to 
+	 * not captured. Used to undo a move
+	 * 
+	 * @param index
+	 *            the index of the dot
+	 */   
+	public void uncapture(int index){
+		clearBit(captured, index);
+		numberCaptured--;
+		stateHash ^= dotKey(index);
+	}
+
+	/**
+	 * Sets the status of a dot to captured like capture, but leaves the counters
+	 * to addCaptured. Several threads may call it at once for dots whose flags are
+	 * in different words of the bitset, that is whose indices differ in index / 64
+	 * (see <b>ParallelFlood</b>)
+	 *
+	 * @param index
+	 *            the index of the dot
+	 */
+	void setCapturedFlag(int index){
+		setBit(captured, index);
+	}
+
+	/**
+	 * Counts dots captured with setCapturedFlag
+	 *
+	 * @param count
+	 *            the number of dots
+	 * @param hash
+	 *            the XOR of their dotKey
+	 */
+	void addCaptured(int count, long hash){
+		numberCaptured += count;
+		stateHash ^= hash;
 	}
 
 
+	/**
+	 * Getter method for the number of captured dots
+	 * 
+	 * @return the number of captured dots
+	 */   
+	public int getNumberCaptured(){
+		return numberCaptured;
+	}
+
 	/**
 	 * Getter method for the current number of steps
 	 * 
@@ -202,6 +453,7 @@ public class GameModel implements Cloneable, Serializable {
 	 *            the new value for currentSelectedColor
 	 */   
 	public void setCurrentSelectedColor(int val) {
+		stateHash ^= colorKey(currentSelectedColor) ^ colorKey(val);
 		currentSelectedColor = val;
 	}
 
@@ -214,20 +466,34 @@ public class GameModel implements Cloneable, Serializable {
 		return currentSelectedColor ;
 	}
 
+	/**
+	 * Gives a 64-bit identity of the position: a Zobrist hash of the captured dots
+	 * and the selected color. It is kept up to date by capture, uncapture and
+	 * setCurrentSelectedColor, so it costs O(1), and two models of the same board
+	 * in the same position have the same hash, whatever the moves that led there.
+	 * The board itself (colors, size, rules) is not part of it.
+	 * 
+	 * @return the hash of the position
+	 */   
+	public long stateHash() {
+		return stateHash;
+	}
+
 
 	/**
-	 * Getter method for the model's dotInfo reference
-	 * at location (i,j)
+	 * Getter method for the state of the dot at location (i,j).
+	 * The board is packed, so the returned DotInfo is a copy: 
+	 * modifying it does not change the model.
 	 *
 	 * @param i
 	 *            the x coordinate of the dot
 	 * @param j
 	 *            the y coordinate of the dot
 	 *
-	 * @return model[i][j]
+	 * @return a DotInfo with the initial color and the status of (i,j)
 	 */   
 	public DotInfo get(int i, int j) {
-		return model[i][j];
+		return new DotInfo(i, j, colors[i*sizeOfGame + j], isCaptured(i, j));
 	}
 
 
@@ -239,6 +505,16 @@ public class GameModel implements Cloneable, Serializable {
 		numberOfSteps++;
 	}
 
+	/**
+	 * Setter method for the number of steps. Used to undo or redo a move
+	 * 
+	 * @param numberOfSteps
+	 *            the new number of steps
+	 */
+	public void setNumberOfSteps(int numberOfSteps){
+		this.numberOfSteps = numberOfSteps;
+	}
+
 	/**
 	 * The metod <b>isFinished</b> returns true iff the game is finished, that
 	 * is, all the dats are captured.
@@ -251,22 +527,131 @@ public class GameModel implements Cloneable, Serializable {
 
 
 	/**
-	 * Returns a deepCopy of this object
+	 * Returns a deepCopy of this object. Its generator is in the same state, so
+	 * the copy draws the same next boards
 	 */
 	public GameModel clone() {
+		long startTime = EngineMetrics.startTime();
+		EngineMetrics.OperationEvent event = EngineMetrics.startEvent();
+		long startAllocation = EngineMetrics.startAllocation();
 
-		DotInfo[][] gameBoard = new DotInfo[sizeOfGame][sizeOfGame];
+		GameModel copy = new GameModel(currentSelectedColor, sizeOfGame, colors.clone(), captured.clone(), 
+				numberOfSteps, numberCaptured, isOrthogonal, isPlane);
+		copy.seed = seed;
+		copy.seedGenerator(generatorSeed);
+		copy.stateHash = stateHash;
 
-		for(int y=0; y<sizeOfGame; y++) {
-			for(int x=0; x<sizeOfGame; x++) {
-				gameBoard[y][x] = model[y][x].clone();
+		EngineMetrics.record(EngineMetrics.Operation.CLONE, startTime, startAllocation, event, 0, this);
+		return copy;
+	}
+
+	/**
+	 * Computes stateHash from scratch
+	 */
+	private long computeStateHash() {
+		long hash = colorKey(currentSelectedColor);
+		for(int w = 0; w < captured.length; w++){
+			long word = captured[w];
+			while(word != 0){
+				hash ^= dotKey((w << 6) + Long.numberOfTrailingZeros(word));
+				word &= word - 1;
 			}
 		}
+		return hash;
+	}
 
-		GameModel copy = new GameModel(currentSelectedColor, sizeOfGame, gameBoard, numberOfSteps, 
-				numberCaptured, isOrthogonal, isPlane);
+	/**
+	 * The Zobrist key of a captured dot. The keys are computed by a mixing
+	 * function instead of being stored, so they cost no memory whatever the size
+	 */
+	static long dotKey(int index) {
+		return mix(index + 0x632BE59BD9B4E019L);
+	}
 
-		return copy;
+	/**
+	 * The Zobrist key of a selected color (-1 before the first move)
+	 */
+	private static long colorKey(int color) {
+		return mix(color + 0x9E3779B97F4A7C15L);
+	}
+
+	/**
+	 * The finalizer of SplitMix64: every bit of the result depends on every bit
+	 * of the value
+	 */
+	private static long mix(long value) {
+		value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+		value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+		return value ^ (value >>> 31);
+	}
+
+	/**
+	 * Number of long words needed to store a bitset of the given length
+	 */
+	private static int wordsFor(int length) {
+		return (length + 63) >>> 6;
+	}
+
+	/**
+	 * Reads the bit at the given index of a bitset
+	 */
+	private static boolean getBit(long[] bits, int index) {
+		return (bits[index >>> 6] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Sets the bit at the given index of a bitset
+	 */
+	private static void setBit(long[] bits, int index) {
+		bits[index >>> 6] |= 1L << index;
+	}
+
+	/**
+	 * Clears the bit at the given index of a bitset
+	 */
+	private static void clearBit(long[] bits, int index) {
+		bits[index >>> 6] &= ~(1L << index);
+	}
+
+	/**
+	 * Reads a serialized model. Saves written before the board was packed 
+	 * hold a DotInfo[][] in the field ``model''; they are converted here.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		ObjectStreamClass streamClass = fields.getObjectStreamClass();
+
+		currentSelectedColor = fields.get("currentSelectedColor", -1);
+		sizeOfGame = fields.get("sizeOfGame", 0);
+		numberOfSteps = fields.get("numberOfSteps", -1);
+		numberCaptured = fields.get("numberCaptured", 0);
+		isOrthogonal = fields.get("isOrthogonal", true);
+		isPlane = fields.get("isPlane", true);
+		seed = fields.get("seed", 0L);
+		generator = (Random) fields.get("generator", null);
+		if (generator == null) {
+			generator = new Random();
+		}
+		// Its state cannot be read, it goes on from its next value
+		seedGenerator(generator.nextLong());
+
+		if (streamClass.getField("colors") != null) {
+			colors = (byte[]) fields.get("colors", null);
+			captured = (long[]) fields.get("captured", null);
+		} else {
+			DotInfo[][] model = (DotInfo[][]) fields.get("model", null);
+			colors = new byte[sizeOfGame*sizeOfGame];
+			captured = new long[wordsFor(sizeOfGame*sizeOfGame)];
+			for(int i = 0; i < sizeOfGame; i++){
+				for(int j = 0; j < sizeOfGame; j++){
+					colors[i*sizeOfGame + j] = (byte) model[i][j].getColor();
+					if(model[i][j].isCaptured()){
+						setBit(captured, i*sizeOfGame + j);
+					}
+				}
+			}
+		}
+		stateHash = computeStateHash();
 	}
 
 	/**
@@ -0,0 +1,69 @@
+/**
+ * The four rule combinations of the game: the board is a plane or a torus (the
+ * borders wrap around), and dots are adjacent orthogonally only or also
+ * diagonally.
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public enum GameRules {
+
+	PLANE_ORTHOGONAL(true, true),
+	PLANE_DIAGONAL(true, false),
+	TORUS_ORTHOGONAL(false, true),
+	TORUS_DIAGONAL(false, false);
+
+	private final boolean isPlane;
+	private final boolean isOrthogonal;
+
+	private GameRules(boolean isPlane, boolean isOrthogonal) {
+		this.isPlane = isPlane;
+		this.isOrthogonal = isOrthogonal;
+	}
+
+	/**
+	 * Getter
+	 *
+	 * @return: true if the game logic follows the plane rule
+	 */
+	public boolean isPlane() {
+		return isPlane;
+	}
+
+	/**
+	 * Getter
+	 *
+	 * @return: true if the game logic follows the orthogonal rule
+	 */
+	public boolean isOrthogonal() {
+		return isOrthogonal;
+	}
+
+	/**
+	 * Finds the rules matching the two options
+	 *
+	 * @param isPlane
+	 *            true on a plane, false on a torus
+	 * @param isOrthogonal
+	 *            true if only orthogonal dots are adjacent
+	 * @return the rules
+	 */
+	public static GameRules of(boolean isPlane, boolean isOrthogonal) {
+		if (isPlane) {
+			return (isOrthogonal ? PLANE_ORTHOGONAL : PLANE_DIAGONAL);
+		} else {
+			return (isOrthogonal ? TORUS_ORTHOGONAL : TORUS_DIAGONAL);
+		}
+	}
+
+	/**
+	 * Finds the rules of a model
+	 *
+	 * @param gameModel
+	 *            the model
+	 * @return the rules
+	 */
+	public static GameRules of(GameModel gameModel) {
+		return of(gameModel.getIsPlane(), gameModel.getIsOrthogonal());
+	}
+
+}
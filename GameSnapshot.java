@@ -0,0 +1,152 @@
+/**
+ * The class <b>GameSnapshot</b> is an immutable copy of the state of a game, as
+ * it should be displayed: the color shown by every dot, the number of steps, the
+ * selected color and the rules. It can be handed to another thread (for instance
+ * a view) while the game goes on.
+ *
+ * A snapshot can be made from the previous one and the dots that changed since,
+ * which it keeps so a view only redraws those.
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public final class GameSnapshot {
+
+	private final int sizeOfGame;
+	private final byte[] colors;
+	private final int numberOfSteps;
+	private final int currentSelectedColor;
+	private final boolean isFinished;
+	private final GameRules rules;
+
+	/**
+	 * The dots that changed since the previous snapshot, null if they all may have
+	 */
+	private final int[] changedDots;
+
+	/**
+	 * Constructor, copies the state of a model
+	 *
+	 * @param gameModel
+	 *            the model to copy
+	 */
+	public GameSnapshot(GameModel gameModel) {
+		sizeOfGame = gameModel.getSize();
+		colors = new byte[sizeOfGame * sizeOfGame];
+		for (int index = 0; index < colors.length; index++) {
+			colors[index] = (byte) gameModel.getColor(index);
+		}
+
+		numberOfSteps = gameModel.getNumberOfSteps();
+		currentSelectedColor = gameModel.getCurrentSelectedColor();
+		isFinished = gameModel.isFinished();
+		rules = GameRules.of(gameModel);
+		changedDots = null;
+	}
+
+	/**
+	 * Constructor, copies the previous snapshot of a model and updates the dots
+	 * that changed since
+	 *
+	 * @param previous
+	 *            the previous snapshot of the model, of the same size
+	 * @param gameModel
+	 *            the model to copy
+	 * @param changedDots
+	 *            the indices (i*size + j) of every dot whose color changed since
+	 *            the previous snapshot
+	 */
+	GameSnapshot(GameSnapshot previous, GameModel gameModel, int[] changedDots) {
+		sizeOfGame = gameModel.getSize();
+		colors = previous.colors.clone();
+		for (int index : changedDots) {
+			colors[index] = (byte) gameModel.getColor(index);
+		}
+
+		numberOfSteps = gameModel.getNumberOfSteps();
+		currentSelectedColor = gameModel.getCurrentSelectedColor();
+		isFinished = gameModel.isFinished();
+		rules = GameRules.of(gameModel);
+		this.changedDots = changedDots;
+	}
+
+	/**
+	 * Getter method for the size of the game
+	 *
+	 * @return the size of the board
+	 */
+	public int getSize() {
+		return sizeOfGame;
+	}
+
+	/**
+	 * returns the color shown by a given dot
+	 *
+	 * @param i
+	 *            the row of the dot
+	 * @param j
+	 *            the column of the dot
+	 * @return the color of the dot at location (i,j)
+	 */
+	public int getColor(int i, int j) {
+		return colors[i * sizeOfGame + j];
+	}
+
+	/**
+	 * returns the color shown by a given dot
+	 *
+	 * @param index
+	 *            the index of the dot, i*size + j
+	 * @return the color of the dot
+	 */
+	public int getColor(int index) {
+		return colors[index];
+	}
+
+	/**
+	 * Getter for the dots whose color changed since the previous snapshot. The
+	 * array must not be modified
+	 *
+	 * @return their indices (i*size + j) in increasing order, or null if every dot
+	 *         may have changed (the first snapshot, a new board)
+	 */
+	public int[] getChangedDots() {
+		return changedDots;
+	}
+
+	/**
+	 * Getter method for the number of steps
+	 *
+	 * @return the number of steps, -1 if no dot was selected yet
+	 */
+	public int getNumberOfSteps() {
+		return numberOfSteps;
+	}
+
+	/**
+	 * Getter method for currentSelectedColor
+	 *
+	 * @return currentSelectedColor
+	 */
+	public int getCurrentSelectedColor() {
+		return currentSelectedColor;
+	}
+
+	/**
+	 * Checks if every dot was captured
+	 *
+	 * @return true if the game is finished
+	 */
+	public boolean isFinished() {
+		return isFinished;
+	}
+
+	/**
+	 * Getter for the rules of the game
+	 *
+	 * @return the rules
+	 */
+	public GameRules getRules() {
+		return rules;
+	}
+
+}
@@ -15,15 +15,24 @@ public class GameView extends JFrame {
 
 
     /**
-     * The board is a two dimensional array of DotButtons instances
+     * Boards larger than this are shown by a <b>BoardCanvas</b> instead of
+     * DotButtons, whose number grows with the square of the size
+     */
+    public static final int LARGE_BOARD_SIZE = 50;
+
+    /**
+     * The board is a two dimensional array of DotButtons instances, or null if it
+     * is shown by boardCanvas
      */
     private DotButton[][] board;
 
+    private BoardCanvas boardCanvas;
+
  
     /**
-     * Reference to the model of the game
+     * The state of the game shown, published by the controller
      */
-    private GameModel gameModel;
+    private GameSnapshot gameSnapshot;
  
     private GameController gameController;
 
@@ -32,15 +41,15 @@ public class GameView extends JFrame {
     /**
      * Constructor used for initializing the Frame
      * 
-     * @param model
-     *            the model of the game (already initialized)
+     * @param snapshot
+     *            the state of the game to show
      * @param gameController
      *            the controller
      */
-    public GameView(GameModel model, GameController gameController) {
+    public GameView(GameSnapshot snapshot, GameController gameController) {
         super("Flood it");
 
-        this.gameModel = model;
+        this.gameSnapshot = snapshot;
         this.gameController = gameController;
 
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -70,6 +79,10 @@ public class GameView extends JFrame {
     	buttonRedo.setFocusPainted(false);
     	buttonRedo.addActionListener(gameController);
     	
+    	JButton buttonHint = new JButton("Hint");
+    	buttonHint.setFocusPainted(false);
+    	buttonHint.addActionListener(gameController);
+
     	JButton buttonSettings = new JButton("Settings");
     	buttonSettings.setFocusPainted(false);
     	buttonSettings.addActionListener(gameController);
@@ -77,6 +90,7 @@ public class GameView extends JFrame {
         JPanel control = new JPanel();
         control.add(buttonUndo);
         control.add(buttonRedo);
+        control.add(buttonHint);
         control.add(buttonSettings);
         add(control, BorderLayout.NORTH);
     }
@@ -85,15 +99,20 @@ public class GameView extends JFrame {
      * Draws the game board at the CENTER of the screen
      */
     private void drawBoard() {
+    	if (gameSnapshot.getSize() > LARGE_BOARD_SIZE) {
+    		drawBoardCanvas();
+    		return;
+    	}
+
     	JPanel panel = new JPanel();
-        panel.setLayout(new GridLayout(gameModel.getSize(), gameModel.getSize()));
+        panel.setLayout(new GridLayout(gameSnapshot.getSize(), gameSnapshot.getSize()));
         panel.setBorder(BorderFactory.createEmptyBorder(20, 20, 0, 20));
-        board = new DotButton[gameModel.getSize()][gameModel.getSize()];
+        board = new DotButton[gameSnapshot.getSize()][gameSnapshot.getSize()];
 
-        for (int row = 0; row < gameModel.getSize(); row++) {
-            for (int column = 0; column < gameModel.getSize(); column++) {
-                board[row][column] = new DotButton(row, column, gameModel.getColor(row,column), 
-                    (gameModel.getSize() < 26 ? DotButton.MEDIUM_SIZE : DotButton.SMALL_SIZE));
+        for (int row = 0; row < gameSnapshot.getSize(); row++) {
+            for (int column = 0; column < gameSnapshot.getSize(); column++) {
+                board[row][column] = new DotButton(row, column, gameSnapshot.getColor(row,column), 
+                    (gameSnapshot.getSize() < 26 ? DotButton.MEDIUM_SIZE : DotButton.SMALL_SIZE));
                 board[row][column].addActionListener(gameController);
                 panel.add(board[row][column]);
             }
@@ -101,6 +120,21 @@ public class GameView extends JFrame {
     	add(panel, BorderLayout.CENTER);
     }
     
+    /**
+     * Draws a large board as a single component, in a scroll pane, at the CENTER
+     * of the screen
+     */
+    private void drawBoardCanvas() {
+    	// The size of the small icons, or small enough for the whole board to fit
+    	int cellSize = Math.min(11, 640 / gameSnapshot.getSize());
+    	boardCanvas = new BoardCanvas(gameSnapshot, cellSize);
+    	boardCanvas.addActionListener(gameController);
+
+    	JScrollPane scrollPane = new JScrollPane(boardCanvas);
+    	scrollPane.setBorder(BorderFactory.createEmptyBorder(20, 20, 0, 20));
+    	add(scrollPane, BorderLayout.CENTER);
+    }
+    
     /**
      * Draws the control board at the SOUTH of the screen
      */
@@ -115,6 +149,7 @@ public class GameView extends JFrame {
 
         JPanel control = new JPanel();
         scoreLabel = new JLabel();
+        scoreLabel.setHorizontalTextPosition(SwingConstants.LEADING);
         control.add(scoreLabel);
         control.add(buttonReset);
         control.add(buttonExit);
@@ -127,38 +162,88 @@ public class GameView extends JFrame {
     }
 
     /**
-     * update the status of the board's DotButton instances based on the current game model
+     * update the status of the board's DotButton instances based on a new state of
+     * the game: only the dots that changed since the previous snapshot, if known
+     *
+     * @param snapshot
+     *            the state of the game
      */
-    public void update(GameModel newGameModel){
-    	gameModel = newGameModel;
-    	
-    	updateBoard();
-        
+    public void update(GameSnapshot snapshot){
+    	gameSnapshot = snapshot;
+
+    	if (boardCanvas != null) {
+    		boardCanvas.update(gameSnapshot);
+    	} else if (gameSnapshot.getChangedDots() == null) {
+    		updateBoard(board, gameSnapshot);
+    	} else {
+    		updateDots(board, gameSnapshot, gameSnapshot.getChangedDots());
+    	}
+
         updateText();
-        
-        // repaint();
     }
-    
+
     /**
-     * Reset all buttons color according to the game model
+     * Reset the color of every button of a board according to a snapshot.
+     * It does not need the frame, so it can also run headless
+     *
+     * @param board
+     *            the DotButtons, indexed by row and column
+     * @param snapshot
+     *            the snapshot giving the colors
      */
-    private void updateBoard() {
+    static void updateBoard(DotButton[][] board, GameSnapshot snapshot) {
     	// does this for the whole board (gameSize X gameSize)
-    	for(int i = 0; i < gameModel.getSize(); i++){
-            for(int j = 0; j < gameModel.getSize(); j++){
-                board[i][j].setColor(gameModel.getColor(i,j));
+    	for(int i = 0; i < snapshot.getSize(); i++){
+            for(int j = 0; j < snapshot.getSize(); j++){
+                board[i][j].setColor(snapshot.getColor(i,j));
             }
         }
     }
     
+    /**
+     * Reset the color of some buttons of a board according to a snapshot.
+     * It does not need the frame, so it can also run headless
+     *
+     * @param board
+     *            the DotButtons, indexed by row and column
+     * @param snapshot
+     *            the snapshot giving the colors
+     * @param dots
+     *            the indices (i*size + j) of the buttons to update
+     */
+    static void updateDots(DotButton[][] board, GameSnapshot snapshot, int[] dots) {
+    	int size = snapshot.getSize();
+    	for (int index : dots) {
+    		board[index / size][index % size].setColor(snapshot.getColor(index));
+    	}
+    }
+    
+    /**
+     * Shows the color suggested by a hint next to the number of steps, until the
+     * next update
+     *
+     * @param color
+     *            the color to play, or -1 if there is none
+     */
+    public void showHint(int color) {
+    	if (color < 0) {
+    		return;
+    	}
+    	updateText();
+    	scoreLabel.setText(scoreLabel.getText() + ", hint:");
+    	// The size of the small icons
+    	scoreLabel.setIcon(IconAtlas.getIcon(11, color));
+    }
+
     /**
      * Reset the text area to the correct String according to the game model
      */
     private void updateText() {
-    	int numberOfSteps = gameModel.getNumberOfSteps();
+    	scoreLabel.setIcon(null);
+    	int numberOfSteps = gameSnapshot.getNumberOfSteps();
     	
     	if (numberOfSteps >= 0) {
-    		scoreLabel.setText("Number of steps: " + gameModel.getNumberOfSteps());
+    		scoreLabel.setText("Number of steps: " + gameSnapshot.getNumberOfSteps());
     	} else {
     		scoreLabel.setText("Select initial dot");
     	}
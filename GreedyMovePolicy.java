@@ -0,0 +1,35 @@
+import java.util.SplittableRandom;
+
+/**
+ * A <b>MovePolicy</b> that plays the color with the most dots touching the
+ * captured region. Ties are broken at random.
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public class GreedyMovePolicy implements MovePolicy {
+
+	public int chooseColor(SimulatedGame game, SplittableRandom random) {
+		int current = game.getCurrentSelectedColor();
+
+		int best = -1;
+		int bestSize = -1;
+		int ties = 0;
+		for (int color = 0; color < GameModel.NUMBER_OF_COLORS; color++) {
+			if (color == current) {
+				continue;
+			}
+
+			int size = game.getFrontierSize(color);
+			if (size > bestSize) {
+				best = color;
+				bestSize = size;
+				ties = 1;
+			} else if (size == bestSize && random.nextInt(++ties) == 0) {
+				best = color;
+			}
+		}
+
+		return best;
+	}
+
+}
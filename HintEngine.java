@@ -0,0 +1,153 @@
+/**
+ * The class <b>HintEngine</b> suggests the next color to play. It follows the game
+ * on a <b>RegionFlood</b>, whose counters give, for each color, the number of dots
+ * a move of that color would capture; they are kept up to date by the moves, so
+ * the greedy hint (the color capturing the most dots) is found by comparing six
+ * counters, whatever the size of the board.
+ *
+ * A hint with a lookahead of k moves plays every sequence of k - 1 colors on the
+ * regions and reads the gain of the last move from the counters, so the last
+ * level of the search costs nothing more. The states of the search are saved in
+ * arrays allocated once, one per level. The sequence capturing the most dots wins;
+ * one that finishes the game wins over a longer one, and ties go to the largest
+ * immediate gain.
+ *
+ * The hint engine must be told every move played after it was created, with
+ * <b>play</b>; it cannot follow an undo, after which a new one must be created.
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public class HintEngine {
+
+	/**
+	 * Longest lookahead, the search growing as 5^(lookahead - 1)
+	 */
+	public static final int MAXIMUM_LOOKAHEAD = 4;
+
+	private final RegionFlood regionFlood;
+	private final int numberOfDots;
+
+	/**
+	 * The state saved at each level of the search
+	 */
+	private final long[][] states;
+
+	/**
+	 * Constructor, follows a game in progress
+	 *
+	 * @param gameModel
+	 *            the model, started and flooded with its current color
+	 */
+	public HintEngine(GameModel gameModel) {
+		if (gameModel.getNumberOfSteps() < 0) {
+			throw new IllegalStateException("The first dot must be selected before asking for a hint");
+		}
+
+		regionFlood = new RegionFlood(new RegionGraph(gameModel), gameModel);
+		numberOfDots = gameModel.getSize() * gameModel.getSize();
+		states = new long[MAXIMUM_LOOKAHEAD][regionFlood.getStateLength()];
+	}
+
+	/**
+	 * Follows a move played in the game
+	 *
+	 * @param color
+	 *            the color played
+	 */
+	public void play(int color) {
+		regionFlood.flood(color);
+	}
+
+	/**
+	 * Finds the color that captures the most dots
+	 *
+	 * @return the color, the lowest one in case of a tie, or -1 if the game is
+	 *         finished
+	 */
+	public int getGreedyHint() {
+		int best = -1;
+		int bestGain = 0;
+		for (int color = 0; color < GameModel.NUMBER_OF_COLORS; color++) {
+			int gain = regionFlood.getGain(color);
+			if (gain > bestGain) {
+				best = color;
+				bestGain = gain;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Finds the color that starts the sequence of moves capturing the most dots
+	 *
+	 * @param lookahead
+	 *            the number of moves of the sequences, from 1 (the greedy hint) to
+	 *            MAXIMUM_LOOKAHEAD
+	 * @return the color, or -1 if the game is finished
+	 */
+	public int getHint(int lookahead) {
+		if (lookahead < 1 || lookahead > MAXIMUM_LOOKAHEAD) {
+			throw new IllegalArgumentException("Invalid lookahead " + lookahead);
+		}
+		if (lookahead == 1) {
+			return getGreedyHint();
+		}
+
+		int best = -1;
+		int bestScore = -1;
+		int bestGain = -1;
+
+		int colors = regionFlood.getFrontierColors();
+		regionFlood.copyStateTo(states[0]);
+		for (int color = 0; color < GameModel.NUMBER_OF_COLORS; color++) {
+			if ((colors & (1 << color)) == 0) {
+				continue;
+			}
+
+			int gain = regionFlood.getGain(color);
+			regionFlood.flood(color);
+			int score = search(1, lookahead - 1);
+			regionFlood.setState(states[0]);
+
+			if (score > bestScore || (score == bestScore && gain > bestGain)) {
+				best = color;
+				bestScore = score;
+				bestGain = gain;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Computes the best score reachable from the current state in a number of
+	 * moves: the number of captured dots, plus the moves left if the game is
+	 * finished sooner
+	 */
+	private int search(int level, int moves) {
+		if (regionFlood.isFinished()) {
+			return numberOfDots + moves;
+		}
+
+		if (moves == 1) {
+			// The gains of the last move are known without playing it
+			int bestGain = 0;
+			for (int color = 0; color < GameModel.NUMBER_OF_COLORS; color++) {
+				bestGain = Math.max(bestGain, regionFlood.getGain(color));
+			}
+			return regionFlood.getNumberCaptured() + bestGain;
+		}
+
+		int bestScore = 0;
+		int colors = regionFlood.getFrontierColors();
+		regionFlood.copyStateTo(states[level]);
+		for (int color = 0; color < GameModel.NUMBER_OF_COLORS; color++) {
+			if ((colors & (1 << color)) != 0) {
+				regionFlood.flood(color);
+				bestScore = Math.max(bestScore, search(level + 1, moves - 1));
+				regionFlood.setState(states[level]);
+			}
+		}
+		return bestScore;
+	}
+
+}
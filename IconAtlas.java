@@ -0,0 +1,255 @@
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.imageio.ImageIO;
+import javax.swing.Icon;
+
+/**
+ * The class <b>IconAtlas</b> holds the images of the dots. The icons of the six
+ * colors (data/{S,M,N}/ball-N.png) are decoded once, on a background thread
+ * started by <b>preload</b> when the program starts, while the game is loaded.
+ *
+ * For each size of dot that is used, the six icons are scaled once into an atlas:
+ * a single image of six squares, one per color. Drawing a dot is then an unscaled
+ * copy of a square of the atlas, whatever the zoom.
+ *
+ * A size is scaled from the smallest source image at least as large, so the
+ * three sizes of the files are used as they are. If a file cannot be read, the
+ * dots of its color are drawn as disks of the color of the icon.
+ *
+ * The atlases are only built on the event dispatch thread (or a single thread).
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public class IconAtlas {
+
+	/**
+	 * The main color of each icon
+	 */
+	private static final int[] PALETTE = { 0xADADAD, 0xF6BB2B, 0x5EC7FD, 0x8DDE21, 0x856FFE, 0xF21D2A };
+
+	/**
+	 * The directories of the icons, from the smallest to the largest
+	 */
+	private static final String[] DIRECTORIES = { "S", "M", "N" };
+
+	/**
+	 * Largest size of dot with an atlas
+	 */
+	public static final int MAXIMUM_SIZE = 64;
+
+	/**
+	 * The decoded icons, by directory then color (null if a file could not be read)
+	 */
+	private static FutureTask<BufferedImage[][]> sources;
+
+	/**
+	 * The atlas of each size, and the icons using it
+	 */
+	private static final BufferedImage[] atlases = new BufferedImage[MAXIMUM_SIZE + 1];
+	private static final Icon[][] icons = new Icon[MAXIMUM_SIZE + 1][];
+
+	/**
+	 * The class is only a set of static methods
+	 */
+	private IconAtlas() {
+	}
+
+	/**
+	 * Starts decoding the icons on a background thread, if not done yet
+	 */
+	public static synchronized void preload() {
+		if (sources == null) {
+			sources = new FutureTask<BufferedImage[][]>(IconAtlas::decode);
+			Thread loader = new Thread(sources, "IconAtlas loader");
+			loader.setDaemon(true);
+			loader.start();
+		}
+	}
+
+	/**
+	 * Reads every icon file
+	 */
+	private static BufferedImage[][] decode() {
+		BufferedImage[][] images = new BufferedImage[DIRECTORIES.length][GameModel.NUMBER_OF_COLORS];
+		for (int directory = 0; directory < DIRECTORIES.length; directory++) {
+			for (int color = 0; color < GameModel.NUMBER_OF_COLORS; color++) {
+				File file = new File("data/" + DIRECTORIES[directory] + "/ball-" + color + ".png");
+				try {
+					images[directory][color] = ImageIO.read(file);
+				} catch (IOException e) {
+					System.out.println("Could not read the icon " + file + ": " + e.getMessage());
+				}
+			}
+		}
+		return images;
+	}
+
+	/**
+	 * Waits for the decoded icons (they are decoded now if preload was not called)
+	 */
+	private static BufferedImage[][] getSources() {
+		preload();
+		try {
+			return sources.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while loading the icons", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Could not load the icons", e.getCause());
+		}
+	}
+
+	/**
+	 * Gives the atlas of a size: the icon of color c is the square of side size at
+	 * (c * size, 0)
+	 *
+	 * @param size
+	 *            the size of a dot, in pixels, from 1 to MAXIMUM_SIZE
+	 * @return the atlas
+	 */
+	public static BufferedImage getAtlas(int size) {
+		if (atlases[size] == null) {
+			atlases[size] = createAtlas(size);
+		}
+		return atlases[size];
+	}
+
+	/**
+	 * Scales the six icons into a new atlas
+	 */
+	private static BufferedImage createAtlas(int size) {
+		BufferedImage[][] images = getSources();
+		BufferedImage atlas = new BufferedImage(size * GameModel.NUMBER_OF_COLORS, size,
+				BufferedImage.TYPE_INT_ARGB_PRE);
+		Graphics2D g = atlas.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+		g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+		for (int color = 0; color < GameModel.NUMBER_OF_COLORS; color++) {
+			BufferedImage source = null;
+			for (int directory = 0; directory < DIRECTORIES.length; directory++) {
+				BufferedImage image = images[directory][color];
+				if (image != null && (source == null || source.getWidth() < size)) {
+					source = image;
+				}
+			}
+
+			if (source == null) {
+				g.setColor(new Color(PALETTE[color]));
+				g.fillOval(color * size, 0, size, size);
+			} else if (source.getWidth() == size && source.getHeight() == size) {
+				g.drawImage(source, color * size, 0, null);
+			} else {
+				g.drawImage(shrink(source, size), color * size, 0, size, size, null);
+			}
+		}
+		g.dispose();
+		return atlas;
+	}
+
+	/**
+	 * Halves an image until it is less than twice the size, since a single
+	 * bicubic scaling by more than 2 skips pixels
+	 */
+	private static BufferedImage shrink(BufferedImage image, int size) {
+		while (image.getWidth() >= 2 * size && image.getHeight() >= 2 * size) {
+			BufferedImage half = new BufferedImage(image.getWidth() / 2, image.getHeight() / 2,
+					BufferedImage.TYPE_INT_ARGB_PRE);
+			Graphics2D g = half.createGraphics();
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g.drawImage(image, 0, 0, half.getWidth(), half.getHeight(), null);
+			g.dispose();
+			image = half;
+		}
+		return image;
+	}
+
+	/**
+	 * Draws a dot
+	 *
+	 * @param g
+	 *            the graphics
+	 * @param atlas
+	 *            the atlas of the size of the dot, from getAtlas
+	 * @param color
+	 *            the color of the dot
+	 * @param x
+	 *            the left of the dot
+	 * @param y
+	 *            the top of the dot
+	 */
+	public static void draw(Graphics g, BufferedImage atlas, int color, int x, int y) {
+		int size = atlas.getHeight();
+		g.drawImage(atlas, x, y, x + size, y + size, color * size, 0, (color + 1) * size, size, null);
+	}
+
+	/**
+	 * Gives the icon of a color at a size, drawn from the atlas of that size.
+	 * Every button of that color and size shares it
+	 *
+	 * @param size
+	 *            the size of the icon, in pixels, from 1 to MAXIMUM_SIZE
+	 * @param color
+	 *            the color
+	 * @return the icon
+	 */
+	public static Icon getIcon(int size, int color) {
+		if (icons[size] == null) {
+			BufferedImage atlas = getAtlas(size);
+			icons[size] = new Icon[GameModel.NUMBER_OF_COLORS];
+			for (int c = 0; c < GameModel.NUMBER_OF_COLORS; c++) {
+				icons[size][c] = new AtlasIcon(atlas, c);
+			}
+		}
+		return icons[size][color];
+	}
+
+	/**
+	 * Gives the main color of the icon of a color, for the dots too small for icons
+	 *
+	 * @param color
+	 *            the color
+	 * @return the color as 0xRRGGBB
+	 */
+	public static int getRGB(int color) {
+		return PALETTE[color];
+	}
+
+	/**
+	 * An icon that is a square of an atlas
+	 */
+	private static class AtlasIcon implements Icon {
+
+		private final BufferedImage atlas;
+		private final int color;
+
+		private AtlasIcon(BufferedImage atlas, int color) {
+			this.atlas = atlas;
+			this.color = color;
+		}
+
+		public void paintIcon(Component c, Graphics g, int x, int y) {
+			draw(g, atlas, color, x, y);
+		}
+
+		public int getIconWidth() {
+			return atlas.getHeight();
+		}
+
+		public int getIconHeight() {
+			return atlas.getHeight();
+		}
+
+	}
+
+}
@@ -0,0 +1,136 @@
+import java.util.Arrays;
+
+/**
+ * An implementation of a stack of primitive ints, stored in a growable array.
+ * Unlike <b>GenericLinkedStack</b>, pushing does not allocate a node (the array
+ * only grows when it is full) and nothing is boxed, so a stack that is cleared
+ * and reused does not allocate at all once it has reached its working size.
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public class IntStack {
+
+	private int[] elements;
+	private int size;
+
+	/**
+	 * Constructor, creates an empty stack with a small capacity
+	 */
+	public IntStack() {
+		this(16);
+	}
+
+	/**
+	 * Constructor, creates an empty stack
+	 *
+	 * @param capacity
+	 *            the number of elements that can be pushed before growing
+	 */
+	public IntStack(int capacity) {
+		elements = new int[Math.max(capacity, 1)];
+	}
+
+	/**
+	 * Checks if the stack is currently empty
+	 *
+	 * @return: true if Stack is empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Getter for the number of elements
+	 *
+	 * @return the number of elements in the stack
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Checks the top of the Stack
+	 *
+	 * @return: the value of the element on top
+	 */
+	public int peek() {
+		if (isEmpty()) {
+			throw new EmptyStackException("IntStack is empty while peeking");
+		}
+
+		return elements[size - 1];
+	}
+
+	/**
+	 * Removes an element from the Stack
+	 *
+	 * @return: the value of the element
+	 */
+	public int pop() {
+		if (isEmpty()) {
+			throw new EmptyStackException("IntStack is empty while poping");
+		}
+
+		return elements[--size];
+	}
+
+	/**
+	 * Pushes an element at the top of the stack
+	 *
+	 * @param value: the value of the element
+	 */
+	public void push(int value) {
+		if (size == elements.length) {
+			elements = Arrays.copyOf(elements, 2 * elements.length);
+		}
+
+		elements[size++] = value;
+	}
+
+	/**
+	 * Pushes every element of another stack, from its bottom to its top
+	 *
+	 * @param other
+	 *            the stack whose elements are pushed, left unchanged
+	 */
+	public void pushAll(IntStack other) {
+		if (size + other.size > elements.length) {
+			elements = Arrays.copyOf(elements, Math.max(size + other.size, 2 * elements.length));
+		}
+
+		System.arraycopy(other.elements, 0, elements, size, other.size);
+		size += other.size;
+	}
+
+	/**
+	 * Returns the element at a given position, 0 being the bottom of the stack
+	 *
+	 * @param position
+	 *            the position of the element
+	 * @return the value of the element
+	 */
+	public int get(int position) {
+		if (position < 0 || position >= size) {
+			throw new IndexOutOfBoundsException("IntStack position " + position + " of " + size);
+		}
+
+		return elements[position];
+	}
+
+	/**
+	 * Removes every element, keeping the storage for reuse
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Copies the elements, from the bottom to the top of the stack
+	 *
+	 * @return a new array with the elements
+	 */
+	public int[] toArray() {
+		return Arrays.copyOf(elements, size);
+	}
+
+}
@@ -0,0 +1,311 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The class <b>LoadGenerator</b> tests a <b>FloodItServer</b>: it opens many
+ * sessions at once, each on its own thread (virtual if possible), waits for all of
+ * them to be connected, then plays games on every session at the same time with
+ * random colors. After each move the session asks for the DIFF and applies it to
+ * its copy of the board, which is compared with the STATE at the end of the game.
+ *
+ * The latency of every move (from sending PLAY to reading the answer) is kept by
+ * its session, and the percentiles of all of them are printed at the end, with the
+ * number of moves per second. By default the sessions play as fast as the server
+ * answers; with a pause between the moves (think), they play like players would.
+ *
+ * Usage: java LoadGenerator [host=localhost] [port=7070] [sessions=1000] [games=1]
+ * [size=14] [rules=PLANE_ORTHOGONAL] [seed=S] [think=0]
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public class LoadGenerator {
+
+	private final String host;
+	private final int port;
+	private final int size;
+	private final GameRules rules;
+	private final int games;
+	private final long seed;
+
+	/**
+	 * Pause of a session between two moves, in milliseconds
+	 */
+	private final int think;
+
+	/**
+	 * Sessions that failed, and their first error
+	 */
+	private final AtomicInteger failures;
+	private volatile String firstError;
+
+	/**
+	 * Constructor
+	 *
+	 * @param host
+	 *            the host of the server
+	 * @param port
+	 *            the port of the server
+	 * @param size
+	 *            the size of the boards
+	 * @param rules
+	 *            the rules of the games
+	 * @param games
+	 *            the number of games played by each session
+	 * @param seed
+	 *            the seed of the boards and of the moves
+	 * @param think
+	 *            the pause of a session between two moves, in milliseconds (0 to
+	 *            play as fast as the server answers)
+	 */
+	public LoadGenerator(String host, int port, int size, GameRules rules, int games, long seed, int think) {
+		this.host = host;
+		this.port = port;
+		this.size = size;
+		this.rules = rules;
+		this.games = games;
+		this.seed = seed;
+		this.think = think;
+		failures = new AtomicInteger();
+	}
+
+	/**
+	 * Runs the sessions and prints the results
+	 *
+	 * @param sessions
+	 *            the number of sessions
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the sessions
+	 */
+	public void run(int sessions) throws InterruptedException {
+		long[][] latencies = new long[sessions][];
+		CountDownLatch connected = new CountDownLatch(sessions);
+		CountDownLatch start = new CountDownLatch(1);
+
+		ExecutorService threads = FloodItServer.newThreadPerTaskExecutor("Client");
+		for (int session = 0; session < sessions; session++) {
+			int number = session;
+			threads.execute(() -> latencies[number] = runSession(number, connected, start));
+		}
+
+		connected.await();
+		long startTime = System.nanoTime();
+		start.countDown();
+		threads.shutdown();
+		threads.awaitTermination(1, TimeUnit.DAYS);
+		long elapsed = System.nanoTime() - startTime;
+
+		int moves = 0;
+		for (long[] session : latencies) {
+			moves += session.length;
+		}
+		long[] all = new long[moves];
+		int position = 0;
+		for (long[] session : latencies) {
+			System.arraycopy(session, 0, all, position, session.length);
+			position += session.length;
+		}
+		Arrays.sort(all);
+
+		System.out.println(String.format("%d sessions, %d moves in %.1f s, %.0f moves per second", sessions, moves,
+				elapsed / 1e9, moves / (elapsed / 1e9)));
+		if (moves > 0) {
+			System.out.println(String.format("Move latency: p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms",
+					percentile(all, 50) / 1e6, percentile(all, 99) / 1e6, percentile(all, 99.9) / 1e6,
+					all[moves - 1] / 1e6));
+		}
+		if (failures.get() > 0) {
+			System.out.println(failures.get() + " sessions failed, the first one with: " + firstError);
+		}
+	}
+
+	/**
+	 * The value under which a percentage of sorted values are
+	 */
+	private static long percentile(long[] sorted, double percentile) {
+		int rank = (int) Math.ceil(sorted.length * percentile / 100);
+		return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+	}
+
+	/**
+	 * Connects, waits for the other sessions, then plays the games
+	 *
+	 * @return the latencies of the moves
+	 */
+	private long[] runSession(int number, CountDownLatch connected, CountDownLatch start) {
+		SplittableRandom random = new SplittableRandom(seed ^ number * 0x9E3779B97F4A7C15L);
+		long[] latencies = new long[16];
+		int moves = 0;
+
+		boolean counted = false;
+		try (Socket socket = new Socket(host, port)) {
+			socket.setTcpNoDelay(true);
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+					StandardCharsets.US_ASCII));
+			Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+					StandardCharsets.US_ASCII));
+
+			connected.countDown();
+			counted = true;
+			start.await();
+
+			byte[] board = new byte[size * size];
+			for (int game = 0; game < games; game++) {
+				send(out, in, "NEW " + size + " " + random.nextLong() + " " + rules, "GAME");
+				String state = send(out, in, "STATE", "STATE");
+				String digits = state.substring(state.lastIndexOf(' ') + 1);
+				for (int index = 0; index < board.length; index++) {
+					board[index] = (byte) (digits.charAt(index) - '0');
+				}
+
+				int row = random.nextInt(size);
+				int column = random.nextInt(size);
+				int color = board[row * size + column];
+				String answer = send(out, in, "SELECT " + row + " " + column, "OK");
+				applyDiff(send(out, in, "DIFF", "DIFF"), board);
+
+				// A random game takes a few times more moves than a good one
+				for (int move = 0; move < 20 * size && !answer.endsWith("WON"); move++) {
+					if (think > 0) {
+						// Spread the moves of the sessions over the pause
+						Thread.sleep(move == 0 ? random.nextInt(think) : think);
+					}
+					color = (color + 1 + random.nextInt(GameModel.NUMBER_OF_COLORS - 1)) % GameModel.NUMBER_OF_COLORS;
+
+					long moveStart = System.nanoTime();
+					answer = send(out, in, "PLAY " + color, "OK");
+					if (moves == latencies.length) {
+						latencies = Arrays.copyOf(latencies, 2 * moves);
+					}
+					latencies[moves++] = System.nanoTime() - moveStart;
+
+					applyDiff(send(out, in, "DIFF", "DIFF"), board);
+				}
+
+				// The board rebuilt from the diffs must be the one of the server
+				state = send(out, in, "STATE", "STATE");
+				digits = state.substring(state.lastIndexOf(' ') + 1);
+				for (int index = 0; index < board.length; index++) {
+					if (board[index] != digits.charAt(index) - '0') {
+						throw new IllegalStateException("The diffs missed the dot " + index);
+					}
+				}
+			}
+			send(out, in, "QUIT", "BYE");
+		} catch (IOException | RuntimeException e) {
+			// A malformed answer fails the session like a lost connection
+			if (failures.getAndIncrement() == 0) {
+				firstError = (e instanceof IOException || e instanceof IllegalStateException ? e.getMessage()
+						: e.toString());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			if (!counted) {
+				connected.countDown();
+			}
+		}
+		return Arrays.copyOf(latencies, moves);
+	}
+
+	/**
+	 * Sends a command and reads the answer, which must start with a word
+	 */
+	private static String send(Writer out, BufferedReader in, String command, String expected) throws IOException {
+		out.write(command);
+		out.write('\n');
+		out.flush();
+
+		String answer = in.readLine();
+		if (answer == null) {
+			throw new IOException("The server closed the connection");
+		}
+		if (!answer.startsWith(expected)) {
+			throw new IllegalStateException(command + " answered " + answer);
+		}
+		return answer;
+	}
+
+	/**
+	 * Applies DIFF count index:color... to a board
+	 */
+	private static void applyDiff(String diff, byte[] board) {
+		String[] words = diff.split(" ");
+		int count = Integer.parseInt(words[1]);
+		if (words.length != count + 2) {
+			throw new IllegalStateException("Invalid diff " + diff);
+		}
+		for (int k = 2; k < words.length; k++) {
+			int colon = words[k].indexOf(':');
+			board[Integer.parseInt(words[k].substring(0, colon))] = (byte) Integer.parseInt(words[k].substring(colon + 1));
+		}
+	}
+
+	/**
+	 * <b>main</b> of the load generator. The parameters are given as name=value
+	 *
+	 * @param args
+	 *            command line parameters
+	 */
+	public static void main(String[] args) {
+		String host = "localhost";
+		int port = FloodItServer.DEFAULT_PORT;
+		int sessions = 1000;
+		int games = 1;
+		int size = 14;
+		GameRules rules = GameRules.PLANE_ORTHOGONAL;
+		long seed = System.nanoTime();
+		int think = 0;
+
+		try {
+			for (String arg : args) {
+				String[] parameter = arg.split("=", 2);
+				String value = (parameter.length == 2 ? parameter[1] : "");
+
+				if (parameter[0].equals("host")) {
+					host = value;
+				} else if (parameter[0].equals("port")) {
+					port = Integer.parseInt(value);
+				} else if (parameter[0].equals("sessions")) {
+					sessions = Integer.parseInt(value);
+				} else if (parameter[0].equals("games")) {
+					games = Integer.parseInt(value);
+				} else if (parameter[0].equals("size")) {
+					size = Integer.parseInt(value);
+				} else if (parameter[0].equals("rules")) {
+					rules = GameRules.valueOf(value.toUpperCase());
+				} else if (parameter[0].equals("seed")) {
+					seed = Long.parseLong(value);
+				} else if (parameter[0].equals("think")) {
+					think = Integer.parseInt(value);
+				} else {
+					System.out.println("Unknown parameter " + arg);
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			System.out.println("Invalid argument: " + e.getMessage());
+			return;
+		}
+
+		System.out.println("Playing " + games + " games of " + size + "x" + size + " on " + sessions
+				+ " sessions of " + host + ":" + port + ", rules " + rules + ", seed " + seed + ", pause " + think
+				+ " ms");
+		try {
+			new LoadGenerator(host, port, size, rules, games, seed, think).run(sessions);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
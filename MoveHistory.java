@@ -0,0 +1,161 @@
+import java.util.Arrays;
+
+/**
+ * The class <b>MoveHistory</b> remembers the moves played since the last reset so
+ * they can be undone and redone. Instead of a copy of the whole model, a move only
+ * records what it changed: the selected color and number of steps before and
+ * after, and the indices of the dots it captured. Undoing or redoing a move
+ * only touches those dots.
+ *
+ * The moves are kept in a single array, the moves that can be undone first, then
+ * the ones that can be redone: an undo or a redo only moves the boundary between
+ * them. The array and its Move objects are reused by the next moves and after a
+ * reset, like the storage of an <b>IntStack</b>.
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public class MoveHistory {
+
+	/**
+	 * The changes made to the model by one move
+	 */
+	private static class Move {
+
+		private int previousColor;
+		private int previousSteps;
+		private int color;
+		private int steps;
+		private int[] capturedDots;
+
+		private Move(int previousColor, int previousSteps, int color, int steps, int[] capturedDots) {
+			this.previousColor = previousColor;
+			this.previousSteps = previousSteps;
+			this.color = color;
+			this.steps = steps;
+			this.capturedDots = capturedDots;
+		}
+
+	}
+
+	/**
+	 * The moves that can be undone are at [0, undoCount), the last one played at
+	 * the top; the moves that can be redone at [undoCount, redoLimit), the last
+	 * one undone at the bottom
+	 */
+	private Move[] moves;
+	private int undoCount;
+	private int redoLimit;
+
+	/**
+	 * Constructor, creates an empty history
+	 */
+	public MoveHistory() {
+		moves = new Move[16];
+	}
+
+	/**
+	 * Forgets every move, keeping the storage for reuse
+	 */
+	public void clear() {
+		for (int position = 0; position < redoLimit; position++) {
+			moves[position].capturedDots = null;
+		}
+		undoCount = 0;
+		redoLimit = 0;
+	}
+
+	/**
+	 * Records a move that was just played on the model. The moves that were
+	 * undone can no longer be redone.
+	 *
+	 * @param previousColor
+	 *            the selected color before the move
+	 * @param previousSteps
+	 *            the number of steps before the move
+	 * @param gameModel
+	 *            the model, after the move
+	 * @param capturedDots
+	 *            the indices of the dots captured by the move
+	 */
+	public void record(int previousColor, int previousSteps, GameModel gameModel, int[] capturedDots) {
+		if (undoCount == moves.length) {
+			moves = Arrays.copyOf(moves, 2 * moves.length);
+		}
+
+		Move move = moves[undoCount];
+		if (move == null) {
+			moves[undoCount] = new Move(previousColor, previousSteps, gameModel.getCurrentSelectedColor(),
+					gameModel.getNumberOfSteps(), capturedDots);
+		} else {
+			move.previousColor = previousColor;
+			move.previousSteps = previousSteps;
+			move.color = gameModel.getCurrentSelectedColor();
+			move.steps = gameModel.getNumberOfSteps();
+			move.capturedDots = capturedDots;
+		}
+
+		// The moves undone before can no longer be redone
+		for (int position = undoCount + 1; position < redoLimit; position++) {
+			moves[position].capturedDots = null;
+		}
+		undoCount++;
+		redoLimit = undoCount;
+	}
+
+	/**
+	 * Checks if a move can be undone
+	 *
+	 * @return true if there is a move to undo
+	 */
+	public boolean canUndo() {
+		return undoCount > 0;
+	}
+
+	/**
+	 * Checks if a move can be redone
+	 *
+	 * @return true if there is a move to redo
+	 */
+	public boolean canRedo() {
+		return undoCount < redoLimit;
+	}
+
+	/**
+	 * Reverts the last move on the model
+	 *
+	 * @param gameModel
+	 *            the model on which the move was played
+	 * @return the indices of the dots the move had captured
+	 */
+	public int[] undo(GameModel gameModel) {
+		Move move = moves[--undoCount];
+
+		for (int index : move.capturedDots) {
+			gameModel.uncapture(index);
+		}
+		gameModel.setCurrentSelectedColor(move.previousColor);
+		gameModel.setNumberOfSteps(move.previousSteps);
+
+		return move.capturedDots;
+	}
+
+	/**
+	 * Plays again the last undone move on the model
+	 *
+	 * @param gameModel
+	 *            the model on which the move was undone
+	 * @return the indices of the dots the move captured
+	 */
+	public int[] redo(GameModel gameModel) {
+		Move move = moves[undoCount++];
+
+		for (int index : move.capturedDots) {
+			gameModel.capture(index);
+		}
+		gameModel.setCurrentSelectedColor(move.color);
+		gameModel.setNumberOfSteps(move.steps);
+
+		return move.capturedDots;
+	}
+
+}
@@ -0,0 +1,320 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The class <b>MoveJournal</b> saves a game after every action of the player, at
+ * a cost that does not depend on the size of the board: a full save (a snapshot,
+ * see <b>SaveFile</b>) is only written from time to time, and every action in
+ * between is appended to a journal as a record of RECORD_LENGTH bytes. The game
+ * is restored by loading the snapshot and replaying the journal on a
+ * <b>GameEngine</b>.
+ *
+ * The journal starts with a header (MAGIC, VERSION and the CRC-32 of the
+ * snapshot it follows) and each record holds its type, a byte argument (a color
+ * or the rules) and an int (the index of a dot or the number of steps after the
+ * action, checked during the replay).
+ *
+ * Compaction writes a new snapshot, then replaces the journal by an empty one.
+ * Both files are replaced atomically, and a journal whose CRC-32 does not match
+ * the snapshot is ignored: whenever the program stops, the files describe the
+ * game as it was after the last recorded action, or a later snapshot. A record
+ * cut in the middle is ignored too. Records are not forced to the disk, so a
+ * crash of the system (not of the program) may lose the last few actions.
+ *
+ * A snapshot is written when the game starts or is reset, when an action cannot
+ * be replayed from the snapshot (undoing a move played before it), and when the
+ * journal becomes as long as a snapshot, so the journal costs O(1) per action
+ * in the long run. Writing errors are reported and never interrupt the game;
+ * recording starts again at the next compaction.
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public class MoveJournal {
+
+	/**
+	 * "FLJR" in ASCII
+	 */
+	public static final int MAGIC = 0x464C4A52;
+
+	public static final short VERSION = 1;
+
+	public static final int HEADER_LENGTH = 14;
+
+	public static final int RECORD_LENGTH = 6;
+
+	/**
+	 * The journal is compacted when it reaches the length of a snapshot, or at
+	 * least this length
+	 */
+	private static final int MINIMUM_COMPACTION_LENGTH = 4096;
+
+	/**
+	 * Types of records
+	 */
+	private static final byte SELECT = 1;
+	private static final byte PLAY = 2;
+	private static final byte UNDO = 3;
+	private static final byte REDO = 4;
+	private static final byte RULES = 5;
+
+	private final Path snapshotPath;
+	private final Path journalPath;
+
+	/**
+	 * The journal, open for appending, or null if recording stopped after an error
+	 */
+	private FileChannel channel;
+	private final ByteBuffer record;
+
+	private long length;
+	private long compactionLength;
+
+	/**
+	 * Number of moves recorded since the snapshot that can be undone, and of moves
+	 * undone since the snapshot that can be redone
+	 */
+	private int undoable;
+	private int redoable;
+
+	/**
+	 * Constructor
+	 *
+	 * @param snapshotPath
+	 *            the file of the snapshot
+	 * @param journalPath
+	 *            the file of the journal
+	 */
+	public MoveJournal(Path snapshotPath, Path journalPath) {
+		this.snapshotPath = snapshotPath;
+		this.journalPath = journalPath;
+		record = ByteBuffer.allocateDirect(RECORD_LENGTH);
+	}
+
+	/**
+	 * Restores the saved game: the snapshot, then the actions of the journal
+	 *
+	 * @return the engine of the game, or null if there is no saved game
+	 * @throws IOException
+	 *             if the snapshot cannot be read
+	 */
+	public GameEngine restore() throws IOException {
+		if (!Files.exists(snapshotPath)) {
+			return null;
+		}
+
+		GameEngine gameEngine = new GameEngine(SaveFile.load(snapshotPath));
+		if (!Files.exists(journalPath)) {
+			return gameEngine;
+		}
+
+		try (FileChannel journal = FileChannel.open(journalPath, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = journal.map(FileChannel.MapMode.READ_ONLY, 0, journal.size());
+			if (buffer.remaining() < HEADER_LENGTH || buffer.getInt() != MAGIC || buffer.getShort() != VERSION
+					|| buffer.getLong() != SaveFile.checksum(snapshotPath)) {
+				// Not the journal of this snapshot: it was already compacted into it
+				return gameEngine;
+			}
+
+			while (buffer.remaining() >= RECORD_LENGTH) {
+				if (!replay(gameEngine, buffer.get(), buffer.get(), buffer.getInt())) {
+					System.out.println("The move journal is damaged, the game is restored up to the damage");
+					break;
+				}
+			}
+		}
+		return gameEngine;
+	}
+
+	/**
+	 * Plays a record on the engine
+	 *
+	 * @return false if the record cannot be played
+	 */
+	private static boolean replay(GameEngine gameEngine, byte type, byte argument, int value) {
+		int size = gameEngine.getGameModel().getSize();
+
+		switch (type) {
+		case SELECT:
+			return value >= 0 && value < size * size && gameEngine.selectDot(value / size, value % size);
+		case PLAY:
+			return gameEngine.isStarted() && argument >= 0 && argument < GameModel.NUMBER_OF_COLORS
+					&& gameEngine.play(argument) && gameEngine.getNumberOfSteps() == value;
+		case UNDO:
+			return gameEngine.undo() && gameEngine.getNumberOfSteps() == value;
+		case REDO:
+			return gameEngine.redo() && gameEngine.getNumberOfSteps() == value;
+		case RULES:
+			gameEngine.setRules(GameRules.values()[argument & 3]);
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Writes a snapshot of the game and starts an empty journal after it
+	 *
+	 * @param gameModel
+	 *            the game
+	 */
+	public void compact(GameModel gameModel) {
+		close();
+
+		try {
+			long checksum = SaveFile.save(gameModel, snapshotPath);
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+			header.putInt(MAGIC);
+			header.putShort(VERSION);
+			header.putLong(checksum);
+			header.flip();
+
+			Path temporary = journalPath.resolveSibling(journalPath.getFileName() + ".tmp");
+			try (FileChannel journal = FileChannel.open(temporary, StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				while (header.hasRemaining()) {
+					journal.write(header);
+				}
+				journal.force(false);
+			}
+			Files.move(temporary, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+			channel = FileChannel.open(journalPath, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+			length = HEADER_LENGTH;
+			compactionLength = Math.max(MINIMUM_COMPACTION_LENGTH, SaveFile.getLength(gameModel.getSize()));
+			undoable = 0;
+			redoable = 0;
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/**
+	 * Records the selection of a dot that played a move
+	 *
+	 * @param row
+	 *            the row of the dot
+	 * @param column
+	 *            the column of the dot
+	 * @param gameModel
+	 *            the game, after the move
+	 */
+	public void recordSelect(int row, int column, GameModel gameModel) {
+		append(SELECT, 0, row * gameModel.getSize() + column, gameModel);
+		undoable++;
+		redoable = 0;
+	}
+
+	/**
+	 * Records a move
+	 *
+	 * @param gameModel
+	 *            the game, after the move
+	 */
+	public void recordPlay(GameModel gameModel) {
+		append(PLAY, gameModel.getCurrentSelectedColor(), gameModel.getNumberOfSteps(), gameModel);
+		undoable++;
+		redoable = 0;
+	}
+
+	/**
+	 * Records that a move was undone
+	 *
+	 * @param gameModel
+	 *            the game, after the undo
+	 */
+	public void recordUndo(GameModel gameModel) {
+		if (undoable == 0) {
+			compact(gameModel);
+			return;
+		}
+
+		append(UNDO, 0, gameModel.getNumberOfSteps(), gameModel);
+		undoable--;
+		redoable++;
+	}
+
+	/**
+	 * Records that a move was redone
+	 *
+	 * @param gameModel
+	 *            the game, after the redo
+	 */
+	public void recordRedo(GameModel gameModel) {
+		if (redoable == 0) {
+			compact(gameModel);
+			return;
+		}
+
+		append(REDO, 0, gameModel.getNumberOfSteps(), gameModel);
+		redoable--;
+		undoable++;
+	}
+
+	/**
+	 * Records a change of the rules
+	 *
+	 * @param gameModel
+	 *            the game, with its new rules
+	 */
+	public void recordRules(GameModel gameModel) {
+		append(RULES, GameRules.of(gameModel).ordinal(), gameModel.getNumberOfSteps(), gameModel);
+	}
+
+	/**
+	 * Appends a record to the journal, and compacts it once it is long enough
+	 */
+	private void append(byte type, int argument, int value, GameModel gameModel) {
+		if (channel == null) {
+			return;
+		}
+
+		try {
+			record.clear();
+			record.put(type);
+			record.put((byte) argument);
+			record.putInt(value);
+			record.flip();
+			while (record.hasRemaining()) {
+				channel.write(record);
+			}
+		} catch (IOException e) {
+			fail(e);
+			return;
+		}
+
+		length += RECORD_LENGTH;
+		if (length >= compactionLength) {
+			compact(gameModel);
+		}
+	}
+
+	/**
+	 * Reports an error and stops recording until the next compaction
+	 */
+	private void fail(IOException e) {
+		System.out.println("Could not save the game: " + e.getMessage());
+		close();
+	}
+
+	/**
+	 * Closes the journal. The game stays restorable from the files
+	 */
+	public void close() {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				System.out.println("Could not close the move journal: " + e.getMessage());
+			}
+			channel = null;
+		}
+	}
+
+}
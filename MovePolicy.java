@@ -0,0 +1,24 @@
+import java.util.SplittableRandom;
+
+/**
+ * A <b>MovePolicy</b> decides which color to play next in a simulated game. A
+ * policy is shared by every worker of a <b>BatchSimulator</b>, so it must not keep
+ * any state of its own: everything it needs comes from the game and the random
+ * generator of the calling worker.
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public interface MovePolicy {
+
+	/**
+	 * Chooses the next color to play. The game has started and is not finished.
+	 *
+	 * @param game
+	 *            the game being played
+	 * @param random
+	 *            the random generator of the worker
+	 * @return a color different from the current selected color
+	 */
+	public abstract int chooseColor(SimulatedGame game, SplittableRandom random);
+
+}
@@ -0,0 +1,149 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The class <b>NeighborTable</b> stores, for every dot of a board, the indices of
+ * its adjacent dots. A dot (i,j) has the index i*size + j; its neighbours are
+ * found at positions [index*degree, index*degree + degree) of a flat int array,
+ * where degree is 4 (orthogonal) or 8 (diagonal). On a plane, missing neighbours
+ * on the border are marked with -1.
+ *
+ * Tables only depend on the size and the rules, so they are built once and
+ * shared: use <b>getTable</b> rather than the constructor. The tables are kept in
+ * a cache of at most CACHE_CAPACITY neighbours, read without any lock: a missing
+ * table is built by the thread asking for it, outside of the cache, and other
+ * tables are dropped when the cache grows too large.
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public class NeighborTable {
+
+	/**
+	 * Number of neighbours (ints) of the tables kept in the cache, 32 MB; the last
+	 * table built is always kept
+	 */
+	private static final long CACHE_CAPACITY = 1 << 23;
+
+	private static final ConcurrentHashMap<Long, NeighborTable> cache = new ConcurrentHashMap<Long, NeighborTable>();
+	private static final AtomicLong cachedNeighbors = new AtomicLong();
+
+	private final int sizeOfGame;
+	private final int degree;
+	private final int[] neighbors;
+
+	/**
+	 * Returns the (possibly cached) table for the given board and rules
+	 *
+	 * @param size
+	 *            the size of the board
+	 * @param isPlane
+	 *            true on a plane, false on a torus
+	 * @param isOrthogonal
+	 *            true if only orthogonal dots are adjacent
+	 * @return the table of neighbours
+	 */
+	public static NeighborTable getTable(int size, boolean isPlane, boolean isOrthogonal) {
+		Long key = (long) size << 2 | (isPlane ? 2 : 0) | (isOrthogonal ? 1 : 0);
+
+		NeighborTable table = cache.get(key);
+		if (table != null) {
+			return table;
+		}
+
+		// Two threads may build the same table: the first one stored is kept
+		table = new NeighborTable(size, isPlane, isOrthogonal);
+		NeighborTable previous = cache.putIfAbsent(key, table);
+		if (previous != null) {
+			return previous;
+		}
+
+		long total = cachedNeighbors.addAndGet(table.neighbors.length);
+		for (Map.Entry<Long, NeighborTable> entry : cache.entrySet()) {
+			if (total <= CACHE_CAPACITY) {
+				break;
+			}
+			if (!entry.getKey().equals(key) && cache.remove(entry.getKey(), entry.getValue())) {
+				total = cachedNeighbors.addAndGet(-entry.getValue().neighbors.length);
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Returns the table matching the size and the rules of a model
+	 *
+	 * @param gameModel
+	 *            the model
+	 * @return the table of neighbours
+	 */
+	public static NeighborTable getTable(GameModel gameModel) {
+		return getTable(gameModel.getSize(), gameModel.getIsPlane(), gameModel.getIsOrthogonal());
+	}
+
+	/**
+	 * Constructor, builds the whole table
+	 */
+	private NeighborTable(int size, boolean isPlane, boolean isOrthogonal) {
+		sizeOfGame = size;
+		degree = (isOrthogonal ? 4 : 8);
+		neighbors = new int[size * size * degree];
+
+		int[] rowOffsets = {1, 0, -1, 0, 1, 1, -1, -1};
+		int[] columnOffsets = {0, 1, 0, -1, 1, -1, 1, -1};
+
+		int position = 0;
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				for (int k = 0; k < degree; k++) {
+					int i = x + rowOffsets[k];
+					int j = y + columnOffsets[k];
+
+					if (isPlane) {
+						neighbors[position++] = (i >= 0 && i < size && j >= 0 && j < size ? i * size + j : -1);
+					} else {
+						neighbors[position++] = positiveModulo(i, size) * size + positiveModulo(j, size);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Java interestingly doesn't do modulo with negative numbers...
+	 * to avoid writing too much code, here is a modulo that always returns
+	 * a positive number.
+	 */
+	private static int positiveModulo(int number, int modulo){
+		return (((number % modulo) + modulo) % modulo);
+	}
+
+	/**
+	 * Getter for the size of the board
+	 *
+	 * @return the size of the board
+	 */
+	public int getSize() {
+		return sizeOfGame;
+	}
+
+	/**
+	 * Getter for the number of neighbour slots per dot (4 or 8)
+	 *
+	 * @return the degree
+	 */
+	public int getDegree() {
+		return degree;
+	}
+
+	/**
+	 * Getter for the flat array of neighbours. It is shared, it must not be
+	 * modified.
+	 *
+	 * @return the neighbours, degree entries per dot, -1 for none
+	 */
+	public int[] getNeighbors() {
+		return neighbors;
+	}
+
+}
@@ -0,0 +1,274 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The class <b>ParallelFlood</b> plays the moves of <b>FloodFrontier</b> on several
+ * cores, for the giant boards where a single move can capture millions of dots.
+ *
+ * The board is split in tiles of TILE_ROWS whole rows. Since TILE_ROWS is a
+ * multiple of 64, the captured flags of a tile are whole words of the bitset of the
+ * model, so the threads never write to the same word: each tile only writes its own
+ * dots (captured flags and frontier flags).
+ *
+ * A move is played in rounds. In a round, every tile that has seeds expands the
+ * capture from them inside its own dots, as a fork-join task; a neighbour in
+ * another tile is not read but sent to that tile, as a seed of the next round.
+ * Between rounds the seeds sent are handed to their tiles, and the move ends when
+ * a round sends none. The neighbours come from the <b>NeighborTable</b>, so the
+ * torus and the diagonal rules only mean more seeds crossing the tiles.
+ *
+ * The dots captured and the new frontier dots of each tile are kept in its own
+ * stacks, then merged in the order of the tiles once the move ends. The tiles and
+ * their stacks are reused from one move to the next.
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public class ParallelFlood {
+
+	/**
+	 * Number of rows of a tile, a multiple of 64
+	 */
+	public static final int TILE_ROWS = 64;
+
+	/**
+	 * Smallest size of board flooded in parallel (the system property
+	 * floodit.parallelFloodSize changes it)
+	 */
+	public static final int PARALLEL_SIZE = Integer.getInteger("floodit.parallelFloodSize", 1024);
+
+	private final GameModel gameModel;
+	private final NeighborTable neighborTable;
+	private final boolean[] inFrontier;
+
+	/**
+	 * The number of dots of a tile, and the tiles
+	 */
+	private final int tileDots;
+	private final Tile[] tiles;
+
+	/**
+	 * The tiles that have seeds for the current round, at [0, numberOfActiveTiles)
+	 */
+	private final Tile[] activeTiles;
+	private int numberOfActiveTiles;
+
+	/**
+	 * Constructor
+	 *
+	 * @param gameModel
+	 *            the model to flood
+	 * @param neighborTable
+	 *            the neighbours of its dots under its rules
+	 * @param inFrontier
+	 *            the frontier flags of the dots, shared with the FloodFrontier
+	 */
+	public ParallelFlood(GameModel gameModel, NeighborTable neighborTable, boolean[] inFrontier) {
+		this.gameModel = gameModel;
+		this.neighborTable = neighborTable;
+		this.inFrontier = inFrontier;
+
+		int size = gameModel.getSize();
+		tileDots = TILE_ROWS * size;
+		tiles = new Tile[(size + TILE_ROWS - 1) / TILE_ROWS];
+		for (int tile = 0; tile < tiles.length; tile++) {
+			tiles[tile] = new Tile(tile * tileDots, Math.min(size * size, (tile + 1) * tileDots));
+		}
+		activeTiles = new Tile[tiles.length];
+	}
+
+	/**
+	 * Checks if this flood can be used for a model, a table and frontier flags
+	 *
+	 * @return true if they are the ones it was built for
+	 */
+	public boolean isFor(GameModel gameModel, NeighborTable neighborTable, boolean[] inFrontier) {
+		return this.gameModel == gameModel && this.neighborTable == neighborTable && this.inFrontier == inFrontier;
+	}
+
+	/**
+	 * Captures every uncaptured dot of a color connected to the captured region
+	 *
+	 * @param color
+	 *            the selected color
+	 * @param buckets
+	 *            the frontier dots of each color: the bucket of the selected color
+	 *            is emptied, the others receive the new frontier dots
+	 * @param capturedDots
+	 *            receives the captured dots
+	 */
+	public void flood(int color, IntStack[] buckets, IntStack capturedDots) {
+		IntStack seeds = buckets[color];
+		while (!seeds.isEmpty()) {
+			int index = seeds.pop();
+			tiles[index / tileDots].seeds.push(index);
+		}
+
+		findActiveTiles();
+		while (numberOfActiveTiles > 0) {
+			ForkJoinPool.commonPool().invoke(new RoundTask(color, 0, numberOfActiveTiles));
+
+			// The seeds sent across the tiles are the next round
+			for (int t = 0; t < numberOfActiveTiles; t++) {
+				IntStack sent = activeTiles[t].sent;
+				for (int k = 0; k < sent.size(); k++) {
+					int index = sent.get(k);
+					tiles[index / tileDots].seeds.push(index);
+				}
+				sent.clear();
+			}
+			findActiveTiles();
+		}
+
+		int count = 0;
+		long hash = 0;
+		for (Tile tile : tiles) {
+			capturedDots.pushAll(tile.captured);
+			count += tile.captured.size();
+			hash ^= tile.hash;
+			tile.captured.clear();
+			tile.hash = 0;
+
+			for (int c = 0; c < GameModel.NUMBER_OF_COLORS; c++) {
+				buckets[c].pushAll(tile.frontier[c]);
+				tile.frontier[c].clear();
+			}
+		}
+		gameModel.addCaptured(count, hash);
+	}
+
+	/**
+	 * Lists the tiles that have seeds
+	 */
+	private void findActiveTiles() {
+		numberOfActiveTiles = 0;
+		for (Tile tile : tiles) {
+			if (!tile.seeds.isEmpty()) {
+				activeTiles[numberOfActiveTiles++] = tile;
+			}
+		}
+	}
+
+	/**
+	 * A band of rows, with the work of its current move
+	 */
+	private class Tile {
+
+		/**
+		 * The indices of its dots, [first, end)
+		 */
+		private final int first;
+		private final int end;
+
+		/**
+		 * The dots to visit (also the work list of the expansion), and the dots
+		 * of other tiles to send to them
+		 */
+		private final IntStack seeds;
+		private final IntStack sent;
+
+		/**
+		 * The dots captured during the move, the XOR of their keys, and the new
+		 * frontier dots of each color
+		 */
+		private final IntStack captured;
+		private long hash;
+		private final IntStack[] frontier;
+
+		private Tile(int first, int end) {
+			this.first = first;
+			this.end = end;
+			seeds = new IntStack();
+			sent = new IntStack();
+			captured = new IntStack();
+			frontier = new IntStack[GameModel.NUMBER_OF_COLORS];
+			for (int color = 0; color < GameModel.NUMBER_OF_COLORS; color++) {
+				frontier[color] = new IntStack();
+			}
+		}
+
+		/**
+		 * Captures the dots of the selected color reached from the seeds without
+		 * leaving the tile. Only the dots of the tile are read or written
+		 */
+		private void expand(int color) {
+			int[] neighbors = neighborTable.getNeighbors();
+			int degree = neighborTable.getDegree();
+
+			while (!seeds.isEmpty()) {
+				int index = seeds.pop();
+				if (gameModel.isCaptured(index)) {
+					inFrontier[index] = false;
+					continue;
+				}
+				if (gameModel.getColor(index) != color) {
+					// A neighbour of a dot captured by another tile
+					addToFrontier(index);
+					continue;
+				}
+
+				inFrontier[index] = false;
+				gameModel.setCapturedFlag(index);
+				captured.push(index);
+				hash ^= GameModel.dotKey(index);
+
+				for (int k = index * degree; k < (index + 1) * degree; k++) {
+					int neighbor = neighbors[k];
+					if (neighbor < 0) {
+						continue;
+					}
+
+					if (neighbor < first || neighbor >= end) {
+						sent.push(neighbor);
+					} else if (!inFrontier[neighbor] && !gameModel.isCaptured(neighbor)) {
+						inFrontier[neighbor] = true;
+						if (gameModel.getColor(neighbor) == color) {
+							seeds.push(neighbor);
+						} else {
+							frontier[gameModel.getColor(neighbor)].push(neighbor);
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * Adds an uncaptured dot to the frontier, if not there yet
+		 */
+		private void addToFrontier(int index) {
+			if (!inFrontier[index]) {
+				inFrontier[index] = true;
+				frontier[gameModel.getColor(index)].push(index);
+			}
+		}
+
+	}
+
+	/**
+	 * Expands a range of the active tiles, splitting it down to single tiles
+	 */
+	private class RoundTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int color;
+		private final int from;
+		private final int to;
+
+		private RoundTask(int color, int from, int to) {
+			this.color = color;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected void compute() {
+			if (to - from == 1) {
+				activeTiles[from].expand(color);
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new RoundTask(color, from, middle), new RoundTask(color, middle, to));
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,429 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The class <b>PuzzleGenerator</b> finds boards whose par (the minimum number of
+ * moves, given by the <b>Solver</b>) is in a given range, for instance exactly 18
+ * moves on a 14x14 board, and writes them to a <b>PuzzlePack</b> as they are found.
+ *
+ * The candidates are boards drawn from random seeds, with a random first dot, so
+ * that a puzzle stays a seed like any other board. They are numbered, and split in
+ * chunks of CHUNK_SIZE candidates taken in turn by the worker threads; a chunk has
+ * its own random generator, seeded from the seed of the generation and the number
+ * of the chunk. The chunks are written in their order, so the pack holds the first
+ * accepted candidates whatever the number of threads, and the same seed gives the
+ * same pack. The workers stay at most CHUNKS_AHEAD chunks per thread ahead of the
+ * chunks written, and any error of a worker stops the generation.
+ *
+ * A candidate is rejected at once if a greedy game already finishes below the
+ * range. Otherwise it is solved, the search giving up as soon as its bound goes
+ * above the range or after a number of states (nodes), so the expensive boards are
+ * dropped instead of slowing the generation. An accepted puzzle is played again
+ * from its seed to check that its solution finishes the game.
+ *
+ * The generation stops after a number of candidates (candidates), in case the
+ * range is out of reach of the boards, and prints its progress every tenth of
+ * the puzzles and every PROGRESS_CANDIDATES candidates.
+ *
+ * Usage: java PuzzleGenerator [puzzles=1000] [size=14] [rules=PLANE_ORTHOGONAL]
+ * [par=18 or par=17-19] [out=puzzles.pack] [seed=S] [threads=T] [nodes=10000000]
+ * [candidates=10000000]
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public class PuzzleGenerator {
+
+	/**
+	 * Number of candidates tried by a worker at a time
+	 */
+	private static final int CHUNK_SIZE = 16;
+
+	/**
+	 * Chunks a worker may try, per thread, before the previous ones are written
+	 */
+	private static final int CHUNKS_AHEAD = 4;
+
+	/**
+	 * Number of candidates tried between two progress lines
+	 */
+	private static final int PROGRESS_CANDIDATES = 100000;
+
+	private final int size;
+	private final GameRules rules;
+	private final int minimumPar;
+	private final int maximumPar;
+	private final long maximumNodes;
+	private final long seed;
+	private final int threads;
+
+	/**
+	 * Candidates of the chunks written: rejected by the greedy game, by the
+	 * solver, and given up
+	 */
+	private long greedyRejections;
+	private long solverRejections;
+	private long abandoned;
+
+	/**
+	 * Constructor
+	 *
+	 * @param size
+	 *            the size of the boards
+	 * @param rules
+	 *            the rules of the games
+	 * @param minimumPar
+	 *            the smallest par accepted
+	 * @param maximumPar
+	 *            the largest par accepted
+	 * @param maximumNodes
+	 *            the number of states after which the solver gives up a candidate
+	 * @param seed
+	 *            the seed of the generation
+	 * @param threads
+	 *            the number of worker threads
+	 */
+	public PuzzleGenerator(int size, GameRules rules, int minimumPar, int maximumPar, long maximumNodes, long seed,
+			int threads) {
+		if (size < 1 || minimumPar < 0 || minimumPar > maximumPar || threads < 1) {
+			throw new IllegalArgumentException("Invalid size, par or number of threads");
+		}
+
+		this.size = size;
+		this.rules = rules;
+		this.minimumPar = minimumPar;
+		this.maximumPar = maximumPar;
+		this.maximumNodes = maximumNodes;
+		this.seed = seed;
+		this.threads = threads;
+	}
+
+	/**
+	 * Generates puzzles until the pack holds a number of them, or a number of
+	 * candidates were tried. The pack is flushed after every chunk written
+	 *
+	 * @param puzzles
+	 *            the number of puzzles wanted
+	 * @param maximumCandidates
+	 *            the number of candidates after which the generation stops, rounded
+	 *            up to a whole chunk
+	 * @param pack
+	 *            the pack receiving them
+	 * @return the number of candidates tried
+	 * @throws IOException
+	 *             if the pack cannot be written
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the workers
+	 */
+	public long generate(int puzzles, long maximumCandidates, PuzzlePack pack)
+			throws IOException, InterruptedException {
+		AtomicLong nextChunk = new AtomicLong();
+		BlockingQueue<Chunk> finished = new LinkedBlockingQueue<Chunk>();
+		// A permit per chunk taken and not written yet
+		Semaphore ahead = new Semaphore(CHUNKS_AHEAD * threads);
+
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		for (int thread = 0; thread < threads; thread++) {
+			workers.execute(() -> {
+				Worker worker;
+				try {
+					worker = new Worker();
+				} catch (Throwable e) {
+					Chunk chunk = new Chunk(-1);
+					chunk.error = e;
+					finished.add(chunk);
+					return;
+				}
+				while (!Thread.currentThread().isInterrupted()) {
+					try {
+						ahead.acquire();
+					} catch (InterruptedException e) {
+						return;
+					}
+					finished.add(worker.run(nextChunk.getAndIncrement()));
+				}
+			});
+		}
+
+		// The chunks finished out of order wait for the previous ones
+		Map<Long, Chunk> waiting = new HashMap<Long, Chunk>();
+		long written = 0;
+		int progressStep = Math.max(1, puzzles / 10);
+		try {
+			while (pack.getNumberOfPuzzles() < puzzles && written * CHUNK_SIZE < maximumCandidates) {
+				Chunk chunk = finished.take();
+				if (chunk.error != null) {
+					throw new IllegalStateException((chunk.number < 0 ? "A worker could not start"
+							: "Chunk " + chunk.number + " failed"), chunk.error);
+				}
+				waiting.put(chunk.number, chunk);
+
+				while (waiting.containsKey(written) && pack.getNumberOfPuzzles() < puzzles
+						&& written * CHUNK_SIZE < maximumCandidates) {
+					int before = pack.getNumberOfPuzzles();
+					chunk = waiting.remove(written);
+					greedyRejections += chunk.greedyRejections;
+					solverRejections += chunk.solverRejections;
+					abandoned += chunk.abandoned;
+					for (Replay puzzle : chunk.puzzles) {
+						if (pack.getNumberOfPuzzles() < puzzles) {
+							pack.add(puzzle);
+						}
+					}
+					pack.flush();
+					written++;
+					ahead.release();
+
+					if (pack.getNumberOfPuzzles() / progressStep > before / progressStep
+							|| written * CHUNK_SIZE % PROGRESS_CANDIDATES < CHUNK_SIZE) {
+						System.out.println(pack.getNumberOfPuzzles() + " puzzles, " + written * CHUNK_SIZE
+								+ " candidates");
+					}
+				}
+			}
+		} finally {
+			workers.shutdownNow();
+			workers.awaitTermination(1, TimeUnit.MINUTES);
+		}
+		return written * CHUNK_SIZE;
+	}
+
+	/**
+	 * Getter for the number of candidates rejected without solving them
+	 *
+	 * @return the number of candidates whose greedy game is below the par
+	 */
+	public long getGreedyRejections() {
+		return greedyRejections;
+	}
+
+	/**
+	 * Getter for the number of candidates rejected by the solver
+	 *
+	 * @return the number of candidates whose par is out of the range
+	 */
+	public long getSolverRejections() {
+		return solverRejections;
+	}
+
+	/**
+	 * Getter for the number of candidates given up
+	 *
+	 * @return the number of candidates not solved within the number of states
+	 */
+	public long getAbandoned() {
+		return abandoned;
+	}
+
+	/**
+	 * The puzzles found in a chunk of candidates and the reasons of the
+	 * rejections, or the error that stopped it
+	 */
+	private static class Chunk {
+
+		private final long number;
+		private final List<Replay> puzzles;
+		private int greedyRejections;
+		private int solverRejections;
+		private int abandoned;
+		private Throwable error;
+
+		private Chunk(long number) {
+			this.number = number;
+			puzzles = new ArrayList<Replay>();
+		}
+
+	}
+
+	/**
+	 * The board and the solver of a worker thread, reused from one candidate to the
+	 * next
+	 */
+	private class Worker {
+
+		private final GameModel gameModel;
+		private final Solver solver;
+
+		private Worker() {
+			gameModel = new GameModel(size, 0);
+			gameModel.setIsPlane(rules.isPlane());
+			gameModel.setIsOrthogonal(rules.isOrthogonal());
+			solver = new Solver();
+		}
+
+		/**
+		 * Tries the candidates of a chunk
+		 */
+		private Chunk run(long number) {
+			Chunk chunk = new Chunk(number);
+			SplittableRandom random = new SplittableRandom(seed ^ number * 0x9E3779B97F4A7C15L);
+
+			try {
+				for (int candidate = 0; candidate < CHUNK_SIZE && !Thread.currentThread().isInterrupted(); candidate++) {
+					long boardSeed = random.nextLong();
+					int row = random.nextInt(size);
+					int column = random.nextInt(size);
+
+					Replay puzzle = tryCandidate(chunk, boardSeed, row, column);
+					if (puzzle != null) {
+						chunk.puzzles.add(puzzle);
+					}
+				}
+			} catch (Throwable e) {
+				// Even an OutOfMemoryError, or the chunk would never be written
+				chunk.error = e;
+			}
+			return chunk;
+		}
+
+		/**
+		 * Solves a candidate, counting its rejection in its chunk
+		 *
+		 * @return its puzzle, or null if it is rejected
+		 */
+		private Replay tryCandidate(Chunk chunk, long boardSeed, int row, int column) {
+			gameModel.reset(boardSeed);
+
+			if (greedyMoves(row, column) < minimumPar) {
+				chunk.greedyRejections++;
+				return null;
+			}
+
+			int[] solution = solver.solve(gameModel, row, column, maximumPar, maximumNodes);
+			if (solution == null && solver.getNodes() > maximumNodes) {
+				chunk.abandoned++;
+				return null;
+			}
+			if (solution == null || solution.length < minimumPar) {
+				chunk.solverRejections++;
+				return null;
+			}
+
+			byte[] moves = new byte[solution.length];
+			for (int move = 0; move < moves.length; move++) {
+				moves[move] = (byte) solution[move];
+			}
+			Replay puzzle = new Replay(size, boardSeed, rules, row, column, moves);
+			if (!puzzle.play().isFinished()) {
+				throw new IllegalStateException("The solution of the seed " + boardSeed + " does not finish the game");
+			}
+			return puzzle;
+		}
+
+		/**
+		 * Plays the color capturing the most dots until the game is finished: an
+		 * upper bound of the par
+		 *
+		 * @return the number of moves played
+		 */
+		private int greedyMoves(int row, int column) {
+			RegionGraph regionGraph = new RegionGraph(gameModel);
+			RegionFlood regionFlood = new RegionFlood(regionGraph, regionGraph.getRegion(row * size + column));
+
+			int moves = 0;
+			while (!regionFlood.isFinished()) {
+				int best = 0;
+				for (int color = 1; color < GameModel.NUMBER_OF_COLORS; color++) {
+					if (regionFlood.getGain(color) > regionFlood.getGain(best)) {
+						best = color;
+					}
+				}
+				regionFlood.flood(best);
+				moves++;
+			}
+			return moves;
+		}
+
+	}
+
+	/**
+	 * <b>main</b> of the generator. The parameters are given as name=value
+	 *
+	 * @param args
+	 *            command line parameters
+	 */
+	public static void main(String[] args) {
+		int puzzles = 1000;
+		int size = 14;
+		GameRules rules = GameRules.PLANE_ORTHOGONAL;
+		int minimumPar = 18;
+		int maximumPar = 18;
+		String out = "puzzles.pack";
+		long seed = System.nanoTime();
+		int threads = Runtime.getRuntime().availableProcessors();
+		long maximumNodes = 10000000;
+		long maximumCandidates = 10000000;
+
+		PuzzleGenerator generator;
+		try {
+			for (String arg : args) {
+				String[] parameter = arg.split("=", 2);
+				String value = (parameter.length == 2 ? parameter[1] : "");
+
+				if (parameter[0].equals("puzzles")) {
+					puzzles = Integer.parseInt(value);
+				} else if (parameter[0].equals("size")) {
+					size = Integer.parseInt(value);
+				} else if (parameter[0].equals("rules")) {
+					rules = GameRules.valueOf(value.toUpperCase());
+				} else if (parameter[0].equals("par")) {
+					String[] range = value.split("-", 2);
+					minimumPar = Integer.parseInt(range[0].trim());
+					maximumPar = (range.length == 2 ? Integer.parseInt(range[1].trim()) : minimumPar);
+				} else if (parameter[0].equals("out")) {
+					out = value;
+				} else if (parameter[0].equals("seed")) {
+					seed = Long.parseLong(value);
+				} else if (parameter[0].equals("threads")) {
+					threads = Integer.parseInt(value);
+				} else if (parameter[0].equals("nodes")) {
+					maximumNodes = Long.parseLong(value);
+				} else if (parameter[0].equals("candidates")) {
+					maximumCandidates = Long.parseLong(value);
+				} else {
+					System.out.println("Unknown parameter " + arg);
+				}
+			}
+			generator = new PuzzleGenerator(size, rules, minimumPar, maximumPar, maximumNodes, seed, threads);
+		} catch (IllegalArgumentException e) {
+			System.out.println("Invalid argument: " + e.getMessage());
+			return;
+		}
+
+		System.out.println("Generating " + puzzles + " puzzles of " + size + "x" + size + ", rules " + rules
+				+ ", par " + minimumPar + (maximumPar > minimumPar ? "-" + maximumPar : "") + ", with " + threads
+				+ " threads, seed " + seed + ", into " + out);
+
+		long start = System.nanoTime();
+		try (PuzzlePack pack = new PuzzlePack(Paths.get(out))) {
+			long candidates = generator.generate(puzzles, maximumCandidates, pack);
+			double elapsed = (System.nanoTime() - start) / 1e9;
+
+			System.out.println(String.format("%d puzzles from %d candidates in %.1f s, %.1f puzzles per second",
+					pack.getNumberOfPuzzles(), candidates, elapsed, pack.getNumberOfPuzzles() / elapsed));
+			System.out.println("Rejected: " + generator.getGreedyRejections() + " by the greedy game, "
+					+ generator.getSolverRejections() + " by the solver, " + generator.getAbandoned()
+					+ " given up after " + maximumNodes + " states");
+			if (pack.getNumberOfPuzzles() < puzzles) {
+				System.out.println("Stopped after " + candidates
+						+ " candidates: widen the par range or raise candidates");
+			}
+		} catch (IOException e) {
+			System.out.println("Could not write the puzzle pack: " + e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,134 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The class <b>PuzzlePack</b> writes a file of puzzles, one after another, as
+ * they are found. A puzzle is the <b>Replay</b> of an optimal game: the size,
+ * seed and rules of its board and its first dot, then the colors of a shortest
+ * solution, whose number is the par of the puzzle. A puzzle takes about 40 bytes.
+ *
+ * The file starts with a header (MAGIC and VERSION), followed by the replays in
+ * their own format. The puzzles are written whole, so a pack is read back up to
+ * the first damaged or cut puzzle (for instance if the generator was stopped
+ * while writing).
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public class PuzzlePack implements Closeable {
+
+	/**
+	 * "FLPK" in ASCII
+	 */
+	public static final int MAGIC = 0x464C504B;
+
+	public static final short VERSION = 1;
+
+	public static final int HEADER_LENGTH = 6;
+
+	private final OutputStream out;
+	private ByteBuffer buffer;
+	private int numberOfPuzzles;
+
+	/**
+	 * Constructor, creates the file (replacing any existing one) and writes its
+	 * header
+	 *
+	 * @param path
+	 *            the file
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public PuzzlePack(Path path) throws IOException {
+		out = new BufferedOutputStream(Files.newOutputStream(path));
+		buffer = ByteBuffer.allocate(256);
+		buffer.putInt(MAGIC);
+		buffer.putShort(VERSION);
+		out.write(buffer.array(), 0, buffer.position());
+	}
+
+	/**
+	 * Appends a puzzle
+	 *
+	 * @param puzzle
+	 *            the replay of an optimal game
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public void add(Replay puzzle) throws IOException {
+		if (buffer.capacity() < puzzle.getLength()) {
+			buffer = ByteBuffer.allocate(puzzle.getLength());
+		}
+		buffer.clear();
+		puzzle.write(buffer);
+		out.write(buffer.array(), 0, buffer.position());
+		numberOfPuzzles++;
+	}
+
+	/**
+	 * Writes the puzzles added so far to the file
+	 *
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Getter for the number of puzzles added
+	 *
+	 * @return the number of puzzles
+	 */
+	public int getNumberOfPuzzles() {
+		return numberOfPuzzles;
+	}
+
+	/**
+	 * Writes the last puzzles and closes the file
+	 *
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public void close() throws IOException {
+		out.close();
+	}
+
+	/**
+	 * Loads the puzzles of a pack
+	 *
+	 * @param path
+	 *            the file
+	 * @return the puzzles, in the order they were written
+	 * @throws IOException
+	 *             if the file cannot be read or is not a puzzle pack
+	 */
+	public static List<Replay> load(Path path) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+		if (buffer.remaining() < HEADER_LENGTH || buffer.getInt() != MAGIC) {
+			throw new IOException("Not a puzzle pack");
+		}
+		short version = buffer.getShort();
+		if (version != VERSION) {
+			throw new IOException("Unsupported version " + version + " of puzzle pack");
+		}
+
+		List<Replay> puzzles = new ArrayList<Replay>();
+		while (buffer.hasRemaining()) {
+			try {
+				puzzles.add(Replay.read(buffer));
+			} catch (IOException e) {
+				System.out.println("The puzzle pack is damaged after " + puzzles.size() + " puzzles");
+				break;
+			}
+		}
+		return puzzles;
+	}
+
+}
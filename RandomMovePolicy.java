@@ -0,0 +1,18 @@
+import java.util.SplittableRandom;
+
+/**
+ * A <b>MovePolicy</b> that plays a random color, different from the current one.
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public class RandomMovePolicy implements MovePolicy {
+
+	public int chooseColor(SimulatedGame game, SplittableRandom random) {
+		int current = game.getCurrentSelectedColor();
+
+		// One of the NUMBER_OF_COLORS - 1 other colors
+		int color = random.nextInt(GameModel.NUMBER_OF_COLORS - 1);
+		return (color >= current ? color + 1 : color);
+	}
+
+}
@@ -0,0 +1,391 @@
+/**
+ * The class <b>RegionFlood</b> plays a game on a <b>RegionGraph</b>: the captured
+ * dots are a set of regions, and a move captures the regions of the selected
+ * color adjacent to them. Since two adjacent regions never have the same color,
+ * a move never has to look further than these regions: it costs time proportional
+ * to the number of regions it captures and their adjacent regions, not to their
+ * number of dots.
+ *
+ * The state is a bitset of the captured regions and, for each color, a bitset of
+ * the uncaptured regions of that color adjacent to the captured ones (the
+ * frontier), plus a few counters. It can be saved and restored as a single array
+ * of longs, which is what a search needs; it is smaller than a bitset of dots by
+ * the average size of the regions.
+ *
+ * The counters include, for each color, the number of regions and of dots of its
+ * frontier. They are updated as regions enter and leave the frontiers, so the gain
+ * of a color and the colors worth playing are known without scanning the bitsets.
+ *
+ * The captured dots of the model the flood starts from must be whole regions,
+ * which is the case once the model was flooded with its current color.
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public class RegionFlood {
+
+	private final RegionGraph regionGraph;
+	private final int numberOfRegions;
+	private final int numberOfDots;
+	private final int numberOfWords;
+
+	/**
+	 * The captured bitset at [0, numberOfWords), then the frontier bitset of each
+	 * color c at [(c + 1) * numberOfWords, (c + 2) * numberOfWords)
+	 */
+	private final long[] bits;
+
+	/**
+	 * The number of captured dots, the number of uncaptured regions of each color,
+	 * and the number of regions and dots of the frontier of each color
+	 */
+	private int numberCaptured;
+	private final int[] remainingRegions;
+	private final int[] frontierRegions;
+	private final int[] gains;
+
+	/**
+	 * Scratch bitset and work lists of getLayerDistance
+	 */
+	private final long[] reached;
+	private IntStack layer;
+	private IntStack nextLayer;
+
+	/**
+	 * Constructor, captures the regions of the captured dots of a model
+	 *
+	 * @param regionGraph
+	 *            the regions of the model
+	 * @param gameModel
+	 *            the model, in which every captured dot belongs to a captured
+	 *            region
+	 */
+	public RegionFlood(RegionGraph regionGraph, GameModel gameModel) {
+		this(regionGraph);
+
+		for (int index = 0; index < numberOfDots; index++) {
+			if (gameModel.isCaptured(index)) {
+				capture(regionGraph.getRegion(index));
+			}
+		}
+	}
+
+	/**
+	 * Constructor, captures a single region, for instance the one of the first dot
+	 * of the game
+	 *
+	 * @param regionGraph
+	 *            the regions of the board
+	 * @param region
+	 *            the region to capture
+	 */
+	public RegionFlood(RegionGraph regionGraph, int region) {
+		this(regionGraph);
+		capture(region);
+	}
+
+	/**
+	 * Constructor, nothing captured
+	 */
+	private RegionFlood(RegionGraph regionGraph) {
+		this.regionGraph = regionGraph;
+		numberOfRegions = regionGraph.getNumberOfRegions();
+		numberOfDots = regionGraph.getSize() * regionGraph.getSize();
+		numberOfWords = (numberOfRegions + 63) >>> 6;
+
+		bits = new long[(GameModel.NUMBER_OF_COLORS + 1) * numberOfWords];
+		remainingRegions = new int[GameModel.NUMBER_OF_COLORS];
+		frontierRegions = new int[GameModel.NUMBER_OF_COLORS];
+		gains = new int[GameModel.NUMBER_OF_COLORS];
+		for (int region = 0; region < numberOfRegions; region++) {
+			remainingRegions[regionGraph.getColor(region)]++;
+		}
+
+		reached = new long[numberOfWords];
+		layer = new IntStack();
+		nextLayer = new IntStack();
+	}
+
+	/**
+	 * Selects a color: captures every region of that color adjacent to the
+	 * captured regions
+	 *
+	 * @param color
+	 *            the selected color
+	 * @return the number of newly captured dots
+	 */
+	public int flood(int color) {
+		int before = numberCaptured;
+		int frontier = (color + 1) * numberOfWords;
+
+		// Every region of the frontier of that color is captured
+		frontierRegions[color] = 0;
+		gains[color] = 0;
+		for (int w = 0; w < numberOfWords; w++) {
+			long word = bits[frontier + w];
+			bits[frontier + w] = 0;
+
+			while (word != 0) {
+				capture((w << 6) + Long.numberOfTrailingZeros(word));
+				word &= word - 1;
+			}
+		}
+
+		return numberCaptured - before;
+	}
+
+	/**
+	 * Captures a region and adds its uncaptured neighbours to the frontier
+	 */
+	private void capture(int region) {
+		if ((bits[region >>> 6] & (1L << region)) != 0) {
+			return;
+		}
+
+		int color = regionGraph.getColor(region);
+		int size = regionGraph.getRegionSize(region);
+		bits[region >>> 6] |= 1L << region;
+		int word = (color + 1) * numberOfWords + (region >>> 6);
+		if ((bits[word] & (1L << region)) != 0) {
+			bits[word] &= ~(1L << region);
+			frontierRegions[color]--;
+			gains[color] -= size;
+		}
+		numberCaptured += size;
+		remainingRegions[color]--;
+
+		int[] adjacency = regionGraph.getAdjacency();
+		int[] starts = regionGraph.getAdjacencyStarts();
+		for (int k = starts[region]; k < starts[region + 1]; k++) {
+			int neighbor = adjacency[k];
+			if ((bits[neighbor >>> 6] & (1L << neighbor)) == 0) {
+				int neighborColor = regionGraph.getColor(neighbor);
+				word = (neighborColor + 1) * numberOfWords + (neighbor >>> 6);
+				if ((bits[word] & (1L << neighbor)) == 0) {
+					bits[word] |= 1L << neighbor;
+					frontierRegions[neighborColor]++;
+					gains[neighborColor] += regionGraph.getRegionSize(neighbor);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Counts the uncaptured dots of a color that a move of that color would capture
+	 *
+	 * @param color
+	 *            the color
+	 * @return the number of dots of the frontier regions of that color
+	 */
+	public int getGain(int color) {
+		return gains[color];
+	}
+
+	/**
+	 * Counts the uncaptured regions of a color that a move of that color would
+	 * capture
+	 *
+	 * @param color
+	 *            the color
+	 * @return the number of frontier regions of that color
+	 */
+	public int getFrontierRegions(int color) {
+		return frontierRegions[color];
+	}
+
+	/**
+	 * Finds the colors that touch the captured regions, that is the colors whose
+	 * selection would capture at least one dot
+	 *
+	 * @return a mask with the bit (1 << color) set for each of these colors
+	 */
+	public int getFrontierColors() {
+		int colors = 0;
+		for (int color = 0; color < GameModel.NUMBER_OF_COLORS; color++) {
+			if (frontierRegions[color] > 0) {
+				colors |= 1 << color;
+			}
+		}
+		return colors;
+	}
+
+	/**
+	 * Finds the colors that still have uncaptured regions
+	 *
+	 * @return a mask with the bit (1 << color) set for each of these colors
+	 */
+	public int getRemainingColors() {
+		int colors = 0;
+		for (int color = 0; color < GameModel.NUMBER_OF_COLORS; color++) {
+			if (remainingRegions[color] > 0) {
+				colors |= 1 << color;
+			}
+		}
+		return colors;
+	}
+
+	/**
+	 * Computes a lower bound of the number of moves left: the largest distance,
+	 * in the region graph, from the captured regions to an uncaptured one. A move
+	 * captures at most the regions at distance 1, so the game cannot end sooner.
+	 *
+	 * @param limit
+	 *            the computation stops once the bound exceeds this value
+	 * @return the distance, or limit + 1 if it is more than limit
+	 */
+	public int getLayerDistance(int limit) {
+		int[] adjacency = regionGraph.getAdjacency();
+		int[] starts = regionGraph.getAdjacencyStarts();
+
+		System.arraycopy(bits, 0, reached, 0, numberOfWords);
+		int left = numberOfRegions;
+		for (int w = 0; w < numberOfWords; w++) {
+			left -= Long.bitCount(reached[w]);
+		}
+
+		// The first layer is the frontier of every color
+		layer.clear();
+		for (int w = 0; w < numberOfWords; w++) {
+			long word = 0;
+			for (int color = 0; color < GameModel.NUMBER_OF_COLORS; color++) {
+				word |= bits[(color + 1) * numberOfWords + w];
+			}
+			reached[w] |= word;
+			left -= Long.bitCount(word);
+			while (word != 0) {
+				layer.push((w << 6) + Long.numberOfTrailingZeros(word));
+				word &= word - 1;
+			}
+		}
+
+		if (layer.isEmpty()) {
+			// Nothing captured yet, or nothing left to capture
+			return (left == 0 ? 0 : limit + 1);
+		}
+
+		int distance = 1;
+		while (left > 0) {
+			if (++distance > limit) {
+				return distance;
+			}
+
+			nextLayer.clear();
+			for (int position = 0; position < layer.size(); position++) {
+				int region = layer.get(position);
+				for (int k = starts[region]; k < starts[region + 1]; k++) {
+					int neighbor = adjacency[k];
+					if ((reached[neighbor >>> 6] & (1L << neighbor)) == 0) {
+						reached[neighbor >>> 6] |= 1L << neighbor;
+						nextLayer.push(neighbor);
+						left--;
+					}
+				}
+			}
+
+			IntStack swap = layer;
+			layer = nextLayer;
+			nextLayer = swap;
+		}
+		return distance;
+	}
+
+	/**
+	 * Getter for the number of captured dots
+	 *
+	 * @return the number of captured dots
+	 */
+	public int getNumberCaptured() {
+		return numberCaptured;
+	}
+
+	/**
+	 * Checks if every dot is captured
+	 *
+	 * @return true if the game is finished
+	 */
+	public boolean isFinished() {
+		return numberCaptured == numberOfDots;
+	}
+
+	/**
+	 * Getter for the number of longs needed to save the state
+	 *
+	 * @return the length of the arrays given to copyStateTo
+	 */
+	public int getStateLength() {
+		return bits.length + 1 + 3 * GameModel.NUMBER_OF_COLORS;
+	}
+
+	/**
+	 * Saves the state, for instance to come back to it later
+	 *
+	 * @param state
+	 *            an array of getStateLength() longs receiving the state
+	 */
+	public void copyStateTo(long[] state) {
+		System.arraycopy(bits, 0, state, 0, bits.length);
+		state[bits.length] = numberCaptured;
+		for (int color = 0; color < GameModel.NUMBER_OF_COLORS; color++) {
+			int counters = bits.length + 1 + 3 * color;
+			state[counters] = remainingRegions[color];
+			state[counters + 1] = frontierRegions[color];
+			state[counters + 2] = gains[color];
+		}
+	}
+
+	/**
+	 * Restores a state
+	 *
+	 * @param state
+	 *            a state saved with copyStateTo
+	 */
+	public void setState(long[] state) {
+		System.arraycopy(state, 0, bits, 0, bits.length);
+		numberCaptured = (int) state[bits.length];
+		for (int color = 0; color < GameModel.NUMBER_OF_COLORS; color++) {
+			int counters = bits.length + 1 + 3 * color;
+			remainingRegions[color] = (int) state[counters];
+			frontierRegions[color] = (int) state[counters + 1];
+			gains[color] = (int) state[counters + 2];
+		}
+	}
+
+	/**
+	 * Computes a 64-bit hash of the captured regions
+	 *
+	 * @return the hash
+	 */
+	public long getCapturedHash() {
+		long hash = 0x9E3779B97F4A7C15L;
+		for (int w = 0; w < numberOfWords; w++) {
+			hash = (hash ^ bits[w]) * 0xBF58476D1CE4E5B9L;
+			hash ^= hash >>> 31;
+		}
+		return hash;
+	}
+
+	/**
+	 * Captures, in a model, the dots of the captured regions
+	 *
+	 * @param gameModel
+	 *            the model the graph was built from
+	 */
+	public void applyTo(GameModel gameModel) {
+		int[] cells = regionGraph.getCells();
+		int[] starts = regionGraph.getCellStarts();
+
+		for (int w = 0; w < numberOfWords; w++) {
+			long word = bits[w];
+			while (word != 0) {
+				int region = (w << 6) + Long.numberOfTrailingZeros(word);
+				word &= word - 1;
+
+				for (int c = starts[region]; c < starts[region + 1]; c++) {
+					if (!gameModel.isCaptured(cells[c])) {
+						gameModel.capture(cells[c]);
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,245 @@
+import java.util.Arrays;
+
+/**
+ * The class <b>RegionGraph</b> is a compressed view of a board: every connected
+ * area of dots of the same color (under the rules of the game) is a region, and
+ * two regions are adjacent if one of their dots are. Once a region touches the
+ * captured dots it is captured as a whole, so the game can be played on regions
+ * instead of dots: see <b>RegionFlood</b>.
+ *
+ * Regions are labelled with a union-find over the dots, then numbered in the
+ * order of their first dot. Each region has a color, a size, its dots and its
+ * adjacent regions; the dots and the adjacent regions of all the regions are
+ * stored in two flat arrays, region r owning the positions [starts[r],
+ * starts[r + 1]). Two adjacent regions never have the same color.
+ *
+ * The graph is built from the colors displayed by a <b>GameModel</b> (the captured
+ * dots having the selected color) and does not change afterwards.
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public class RegionGraph {
+
+	private final int sizeOfGame;
+	private final int numberOfRegions;
+
+	/**
+	 * The region of each dot, by index (i*size + j)
+	 */
+	private final int[] regionOf;
+
+	private final byte[] colors;
+	private final int[] sizes;
+
+	/**
+	 * The dots of every region, and the adjacent regions of every region
+	 */
+	private final int[] cellStarts;
+	private final int[] cells;
+	private final int[] adjacencyStarts;
+	private final int[] adjacency;
+
+	/**
+	 * Constructor, labels the regions of a model under its current rules
+	 *
+	 * @param gameModel
+	 *            the model
+	 */
+	public RegionGraph(GameModel gameModel) {
+		sizeOfGame = gameModel.getSize();
+		int numberOfDots = sizeOfGame * sizeOfGame;
+		NeighborTable neighborTable = NeighborTable.getTable(gameModel);
+		int[] neighbors = neighborTable.getNeighbors();
+		int degree = neighborTable.getDegree();
+
+		int[] dotColors = new int[numberOfDots];
+		for (int index = 0; index < numberOfDots; index++) {
+			dotColors[index] = gameModel.getColor(index);
+		}
+
+		// Union-find: parent[index] leads to the root of the area of the dot
+		int[] parent = new int[numberOfDots];
+		for (int index = 0; index < numberOfDots; index++) {
+			parent[index] = index;
+		}
+		for (int index = 0; index < numberOfDots; index++) {
+			for (int k = index * degree; k < (index + 1) * degree; k++) {
+				int neighbor = neighbors[k];
+				if (neighbor >= 0 && dotColors[neighbor] == dotColors[index]) {
+					union(parent, index, neighbor);
+				}
+			}
+		}
+
+		// Numbers the roots in the order of their first dot
+		regionOf = new int[numberOfDots];
+		int count = 0;
+		for (int index = 0; index < numberOfDots; index++) {
+			int root = find(parent, index);
+			regionOf[index] = (root == index ? count++ : regionOf[root]);
+		}
+		numberOfRegions = count;
+
+		colors = new byte[numberOfRegions];
+		sizes = new int[numberOfRegions];
+		for (int index = 0; index < numberOfDots; index++) {
+			colors[regionOf[index]] = (byte) dotColors[index];
+			sizes[regionOf[index]]++;
+		}
+
+		// The dots, grouped by region
+		cellStarts = new int[numberOfRegions + 1];
+		for (int region = 0; region < numberOfRegions; region++) {
+			cellStarts[region + 1] = cellStarts[region] + sizes[region];
+		}
+		cells = new int[numberOfDots];
+		int[] positions = new int[numberOfRegions];
+		for (int index = 0; index < numberOfDots; index++) {
+			int region = regionOf[index];
+			cells[cellStarts[region] + positions[region]++] = index;
+		}
+
+		// The adjacent regions, each one listed once thanks to the last region
+		// that saw it
+		IntStack found = new IntStack();
+		int[] seenBy = new int[numberOfRegions];
+		Arrays.fill(seenBy, -1);
+		adjacencyStarts = new int[numberOfRegions + 1];
+		for (int region = 0; region < numberOfRegions; region++) {
+			for (int c = cellStarts[region]; c < cellStarts[region + 1]; c++) {
+				int index = cells[c];
+				for (int k = index * degree; k < (index + 1) * degree; k++) {
+					int neighbor = neighbors[k];
+					if (neighbor >= 0) {
+						int other = regionOf[neighbor];
+						if (other != region && seenBy[other] != region) {
+							seenBy[other] = region;
+							found.push(other);
+						}
+					}
+				}
+			}
+			adjacencyStarts[region + 1] = found.size();
+		}
+		adjacency = found.toArray();
+	}
+
+	/**
+	 * Finds the root of the area of a dot, halving the path on the way
+	 */
+	private static int find(int[] parent, int index) {
+		while (parent[index] != index) {
+			parent[index] = parent[parent[index]];
+			index = parent[index];
+		}
+		return index;
+	}
+
+	/**
+	 * Merges the areas of two dots, under the smallest root so roots stay the
+	 * first dot of their area
+	 */
+	private static void union(int[] parent, int first, int second) {
+		int firstRoot = find(parent, first);
+		int secondRoot = find(parent, second);
+		if (firstRoot < secondRoot) {
+			parent[secondRoot] = firstRoot;
+		} else if (secondRoot < firstRoot) {
+			parent[firstRoot] = secondRoot;
+		}
+	}
+
+	/**
+	 * Getter for the size of the board
+	 *
+	 * @return the size of the board
+	 */
+	public int getSize() {
+		return sizeOfGame;
+	}
+
+	/**
+	 * Getter for the number of regions
+	 *
+	 * @return the number of regions
+	 */
+	public int getNumberOfRegions() {
+		return numberOfRegions;
+	}
+
+	/**
+	 * Getter for the region of a dot
+	 *
+	 * @param index
+	 *            the index (i*size + j) of the dot
+	 * @return the region
+	 */
+	public int getRegion(int index) {
+		return regionOf[index];
+	}
+
+	/**
+	 * Getter for the color of a region
+	 *
+	 * @param region
+	 *            the region
+	 * @return the color of its dots
+	 */
+	public int getColor(int region) {
+		return colors[region];
+	}
+
+	/**
+	 * Getter for the size of a region
+	 *
+	 * @param region
+	 *            the region
+	 * @return the number of its dots
+	 */
+	public int getRegionSize(int region) {
+		return sizes[region];
+	}
+
+	/**
+	 * Getter for the flat array of the dots of the regions. It is shared, it must
+	 * not be modified.
+	 *
+	 * @return the dots, the ones of region r at [getCellStarts()[r],
+	 *         getCellStarts()[r + 1])
+	 */
+	public int[] getCells() {
+		return cells;
+	}
+
+	/**
+	 * Getter for the start of the dots of every region in getCells(). It is shared,
+	 * it must not be modified.
+	 *
+	 * @return numberOfRegions + 1 positions
+	 */
+	public int[] getCellStarts() {
+		return cellStarts;
+	}
+
+	/**
+	 * Getter for the flat array of the adjacent regions. It is shared, it must not
+	 * be modified.
+	 *
+	 * @return the regions adjacent to region r, at [getAdjacencyStarts()[r],
+	 *         getAdjacencyStarts()[r + 1])
+	 */
+	public int[] getAdjacency() {
+		return adjacency;
+	}
+
+	/**
+	 * Getter for the start of the adjacent regions of every region in
+	 * getAdjacency(). It is shared, it must not be modified.
+	 *
+	 * @return numberOfRegions + 1 positions
+	 */
+	public int[] getAdjacencyStarts() {
+		return adjacencyStarts;
+	}
+
+}
@@ -0,0 +1,295 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * The class <b>Replay</b> is an immutable record of a whole game: the size, the
+ * seed and the rules of its board, its first dot and the colors played after it.
+ * Since a seed always gives the same board, this is enough to play the game again
+ * exactly, without any user interface, with <b>play</b>. Every color must be a
+ * move: none repeats the color selected before it, so the number of steps of the
+ * replay is the one of its game.
+ *
+ * A replay is stored in a few tens of bytes: a header (MAGIC, VERSION, the rules
+ * as a GameRules ordinal, the size, the seed, the index of the first dot and the
+ * number of moves) followed by the moves, two colors per byte (high half first).
+ * Numbers are big-endian.
+ *
+ * Usage: java Replay file [repetitions] plays a replay file and reports the time
+ * taken, to reproduce a game or a performance problem on any machine.
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public final class Replay {
+
+	/**
+	 * "FLRP" in ASCII
+	 */
+	public static final int MAGIC = 0x464C5250;
+
+	public static final short VERSION = 1;
+
+	public static final int HEADER_LENGTH = 27;
+
+	private final int sizeOfGame;
+	private final long seed;
+	private final GameRules rules;
+	private final int firstRow;
+	private final int firstColumn;
+	private final byte[] moves;
+
+	/**
+	 * Constructor
+	 *
+	 * @param size
+	 *            the size of the board
+	 * @param seed
+	 *            the seed of the board
+	 * @param rules
+	 *            the rules of the game
+	 * @param firstRow
+	 *            the row of the first dot
+	 * @param firstColumn
+	 *            the column of the first dot
+	 * @param moves
+	 *            the colors played after the first dot, each different from the
+	 *            previous one
+	 */
+	public Replay(int size, long seed, GameRules rules, int firstRow, int firstColumn, byte[] moves) {
+		if (firstRow < 0 || firstRow >= size || firstColumn < 0 || firstColumn >= size) {
+			throw new IllegalArgumentException("The first dot is not on the board");
+		}
+		for (int move = 0; move < moves.length; move++) {
+			if (moves[move] < 0 || moves[move] >= GameModel.NUMBER_OF_COLORS) {
+				throw new IllegalArgumentException("Invalid color " + moves[move]);
+			}
+			if (move > 0 && moves[move] == moves[move - 1]) {
+				throw new IllegalArgumentException("The move " + (move + 1) + " repeats the color " + moves[move]);
+			}
+		}
+
+		this.sizeOfGame = size;
+		this.seed = seed;
+		this.rules = rules;
+		this.firstRow = firstRow;
+		this.firstColumn = firstColumn;
+		this.moves = moves.clone();
+	}
+
+	/**
+	 * Getter method for the size of the game
+	 *
+	 * @return the size of the board
+	 */
+	public int getSize() {
+		return sizeOfGame;
+	}
+
+	/**
+	 * Getter for the seed of the board
+	 *
+	 * @return the seed
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Getter for the rules of the game
+	 *
+	 * @return the rules
+	 */
+	public GameRules getRules() {
+		return rules;
+	}
+
+	/**
+	 * Getter for the row of the first dot
+	 *
+	 * @return the row
+	 */
+	public int getFirstRow() {
+		return firstRow;
+	}
+
+	/**
+	 * Getter for the column of the first dot
+	 *
+	 * @return the column
+	 */
+	public int getFirstColumn() {
+		return firstColumn;
+	}
+
+	/**
+	 * Getter for the number of steps of the game, as counted by the model: the
+	 * selection of the first dot is step 0
+	 *
+	 * @return the number of colors played after the first dot
+	 */
+	public int getNumberOfSteps() {
+		return moves.length;
+	}
+
+	/**
+	 * Plays the game again, from a new board
+	 *
+	 * @return the engine, once every move was played
+	 * @throws IllegalStateException
+	 *             if the first move repeats the color of the first dot
+	 */
+	public GameEngine play() {
+		GameEngine gameEngine = new GameEngine(sizeOfGame, seed, rules);
+		gameEngine.selectDot(firstRow, firstColumn);
+		for (byte color : moves) {
+			if (!gameEngine.play(color)) {
+				throw new IllegalStateException("The color " + color + " is already selected at step "
+						+ gameEngine.getNumberOfSteps());
+			}
+		}
+		return gameEngine;
+	}
+
+	/**
+	 * Computes the number of bytes of the replay
+	 *
+	 * @return the length of the replay once written
+	 */
+	public int getLength() {
+		return HEADER_LENGTH + (moves.length + 1) / 2;
+	}
+
+	/**
+	 * Writes the replay at the position of a buffer
+	 *
+	 * @param buffer
+	 *            a buffer with at least getLength() bytes remaining
+	 */
+	public void write(ByteBuffer buffer) {
+		buffer.putInt(MAGIC);
+		buffer.putShort(VERSION);
+		buffer.put((byte) rules.ordinal());
+		buffer.putInt(sizeOfGame);
+		buffer.putLong(seed);
+		buffer.putInt(firstRow * sizeOfGame + firstColumn);
+		buffer.putInt(moves.length);
+
+		for (int move = 0; move < moves.length; move += 2) {
+			int low = (move + 1 < moves.length ? moves[move + 1] : 0);
+			buffer.put((byte) (moves[move] << 4 | low));
+		}
+	}
+
+	/**
+	 * Reads a replay at the position of a buffer
+	 *
+	 * @param buffer
+	 *            the buffer
+	 * @return the replay
+	 * @throws IOException
+	 *             if the buffer does not hold a valid replay
+	 */
+	public static Replay read(ByteBuffer buffer) throws IOException {
+		if (buffer.remaining() < HEADER_LENGTH || buffer.getInt() != MAGIC) {
+			throw new IOException("Not a replay");
+		}
+		short version = buffer.getShort();
+		if (version != VERSION) {
+			throw new IOException("Unsupported version " + version + " of replay");
+		}
+
+		int rules = buffer.get();
+		int size = buffer.getInt();
+		long seed = buffer.getLong();
+		int firstDot = buffer.getInt();
+		int numberOfMoves = buffer.getInt();
+
+		if (rules < 0 || rules >= GameRules.values().length || size <= 0 || size > SaveFile.MAXIMUM_SIZE
+				|| firstDot < 0 || firstDot / size >= size || numberOfMoves < 0
+				|| buffer.remaining() < (numberOfMoves + 1) / 2) {
+			throw new IOException("Invalid replay");
+		}
+
+		byte[] moves = new byte[numberOfMoves];
+		for (int move = 0; move < numberOfMoves; move += 2) {
+			int pair = buffer.get() & 0xFF;
+			moves[move] = (byte) (pair >>> 4);
+			if (move + 1 < numberOfMoves) {
+				moves[move + 1] = (byte) (pair & 15);
+			}
+		}
+
+		try {
+			return new Replay(size, seed, GameRules.values()[rules], firstDot / size, firstDot % size, moves);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid replay: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Saves the replay in a file
+	 *
+	 * @param path
+	 *            the file
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public void save(Path path) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(getLength());
+		write(buffer);
+		Files.write(path, buffer.array());
+	}
+
+	/**
+	 * Loads a replay from a file
+	 *
+	 * @param path
+	 *            the file
+	 * @return the replay
+	 * @throws IOException
+	 *             if the file cannot be read or is not a valid replay
+	 */
+	public static Replay load(Path path) throws IOException {
+		return read(ByteBuffer.wrap(Files.readAllBytes(path)));
+	}
+
+	/**
+	 * <b>main</b> of the replay: plays a replay file, as many times as asked
+	 *
+	 * @param args
+	 *            the file, then the number of repetitions (1 by default)
+	 */
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			System.out.println("Usage: java Replay file [repetitions]");
+			return;
+		}
+
+		try {
+			Replay replay = load(Paths.get(args[0]));
+			int repetitions = Math.max(1, (args.length > 1 ? Integer.parseInt(args[1]) : 1));
+
+			GameEngine gameEngine = null;
+			long start = System.nanoTime();
+			for (int repetition = 0; repetition < repetitions; repetition++) {
+				gameEngine = replay.play();
+			}
+			long elapsed = System.nanoTime() - start;
+
+			System.out.println("Board " + replay.getSize() + "x" + replay.getSize() + ", rules "
+					+ replay.getRules() + ", seed " + replay.getSeed() + ": " + gameEngine.getNumberOfSteps()
+					+ " steps, " + (gameEngine.isFinished() ? "finished" : "not finished"));
+			System.out.println(String.format("%d replays in %.3f ms, %.3f ms per replay", repetitions,
+					elapsed / 1e6, elapsed / 1e6 / repetitions));
+		} catch (IOException e) {
+			System.out.println("Could not read the replay: " + e.getMessage());
+		} catch (IllegalArgumentException e) {
+			System.out.println("Invalid argument: " + e.getMessage());
+		} catch (IllegalStateException e) {
+			System.out.println("Invalid replay: " + e.getMessage());
+		}
+	}
+
+}
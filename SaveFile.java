@@ -0,0 +1,297 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * The class <b>SaveFile</b> reads and writes games in a compact binary format,
+ * instead of the Java serialization of the whole <b>GameModel</b>. A save is:
+ *
+ * - a header of HEADER_LENGTH bytes: the magic number MAGIC, the version of the
+ *   format, the rules (bit 0: plane, bit 1: orthogonal), the selected color, the
+ *   size of the board, the number of steps and the seed of the board (since
+ *   version 2; version 1 files, without it, are still read);
+ * - the initial colors of the dots, 3 bits each, COLORS_PER_WORD per long;
+ * - the captured dots, one bit each, 64 per long.
+ *
+ * Numbers are big-endian and dots are in row-major order (index i*size + j).
+ * Files are written through a channel from a single buffer, into a temporary
+ * file that then replaces the save, so an interrupted save never leaves a
+ * truncated file. They are read through a memory mapping.
+ *
+ * Games saved with Java serialization (savedGame.ser) can still be read with
+ * <b>importSerialized</b>.
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public class SaveFile {
+
+	/**
+	 * "FLIT" in ASCII
+	 */
+	public static final int MAGIC = 0x464C4954;
+
+	public static final short VERSION = 2;
+
+	public static final int HEADER_LENGTH = 24;
+
+	/**
+	 * Length of the header of the version 1, which had no seed
+	 */
+	private static final int VERSION_1_HEADER_LENGTH = 16;
+
+	/**
+	 * Number of 3-bit colors packed in a long (the last bit is unused)
+	 */
+	private static final int COLORS_PER_WORD = 21;
+
+	/**
+	 * The high bit of each 3-bit color of a word: a color is invalid (6 or 7) if
+	 * both its high and middle bits are set
+	 */
+	private static final long HIGH_BITS = 0x4924924924924924L;
+
+	/**
+	 * Largest size of board accepted when reading a save or a replay, so lengths
+	 * fit in an int
+	 */
+	public static final int MAXIMUM_SIZE = 8192;
+
+	private static final int PLANE_FLAG = 1;
+	private static final int ORTHOGONAL_FLAG = 2;
+
+	/**
+	 * The class is only a set of static methods
+	 */
+	private SaveFile() {
+	}
+
+	/**
+	 * Computes the number of bytes of the save of a board
+	 *
+	 * @param size
+	 *            the size of the board
+	 * @return the length of the save
+	 */
+	public static int getLength(int size) {
+		int numberOfDots = size * size;
+		int colorWords = (numberOfDots + COLORS_PER_WORD - 1) / COLORS_PER_WORD;
+		int capturedWords = (numberOfDots + 63) >>> 6;
+		return HEADER_LENGTH + 8 * (colorWords + capturedWords);
+	}
+
+	/**
+	 * Saves a game in a file. The file is replaced only once the save is complete
+	 *
+	 * @param gameModel
+	 *            the game to save
+	 * @param path
+	 *            the file
+	 * @return the CRC-32 of the file
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public static long save(GameModel gameModel, Path path) throws IOException {
+		long startTime = EngineMetrics.startTime();
+		EngineMetrics.OperationEvent event = EngineMetrics.startEvent();
+		long startAllocation = EngineMetrics.startAllocation();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(getLength(gameModel.getSize()));
+		write(gameModel, buffer);
+		buffer.flip();
+
+		CRC32 checksum = new CRC32();
+		checksum.update(buffer.duplicate());
+
+		Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(false);
+		}
+		Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		EngineMetrics.record(EngineMetrics.Operation.SAVE, startTime, startAllocation, event, 0, gameModel);
+		return checksum.getValue();
+	}
+
+	/**
+	 * Computes the CRC-32 of a file, to check that it is the one that was saved
+	 *
+	 * @param path
+	 *            the file
+	 * @return the CRC-32 of the file
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static long checksum(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			CRC32 checksum = new CRC32();
+			checksum.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+			return checksum.getValue();
+		}
+	}
+
+	/**
+	 * Loads a game from a file
+	 *
+	 * @param path
+	 *            the file
+	 * @return the game
+	 * @throws IOException
+	 *             if the file cannot be read or is not a valid save
+	 */
+	public static GameModel load(Path path) throws IOException {
+		long startTime = EngineMetrics.startTime();
+		EngineMetrics.OperationEvent event = EngineMetrics.startEvent();
+		long startAllocation = EngineMetrics.startAllocation();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			GameModel gameModel = read(buffer);
+
+			EngineMetrics.record(EngineMetrics.Operation.LOAD, startTime, startAllocation, event, 0, gameModel);
+			return gameModel;
+		}
+	}
+
+	/**
+	 * Writes a game at the position of a buffer
+	 *
+	 * @param gameModel
+	 *            the game
+	 * @param buffer
+	 *            a buffer with at least getLength(size) bytes remaining
+	 */
+	public static void write(GameModel gameModel, ByteBuffer buffer) {
+		int size = gameModel.getSize();
+		int numberOfDots = size * size;
+
+		buffer.putInt(MAGIC);
+		buffer.putShort(VERSION);
+		buffer.put((byte) ((gameModel.getIsPlane() ? PLANE_FLAG : 0)
+				| (gameModel.getIsOrthogonal() ? ORTHOGONAL_FLAG : 0)));
+		buffer.put((byte) gameModel.getCurrentSelectedColor());
+		buffer.putInt(size);
+		buffer.putInt(gameModel.getNumberOfSteps());
+		buffer.putLong(gameModel.getSeed());
+
+		// The words are built in arrays, then copied in bulk
+		// (a copy of the colors padded to whole words, so every word takes the same path)
+		long[] colorWords = new long[(numberOfDots + COLORS_PER_WORD - 1) / COLORS_PER_WORD];
+		byte[] colors = Arrays.copyOf(gameModel.getInitialColors(), colorWords.length * COLORS_PER_WORD);
+		for (int w = 0; w < colorWords.length; w++) {
+			int first = w * COLORS_PER_WORD;
+			long word = 0;
+			for (int k = COLORS_PER_WORD - 1; k >= 0; k--) {
+				word = word << 3 | colors[first + k];
+			}
+			colorWords[w] = word;
+		}
+		long[] captured = gameModel.getCapturedBits();
+
+		LongBuffer words = buffer.asLongBuffer();
+		words.put(colorWords);
+		words.put(captured);
+		buffer.position(buffer.position() + 8 * (colorWords.length + captured.length));
+	}
+
+	/**
+	 * Reads a game at the position of a buffer
+	 *
+	 * @param buffer
+	 *            the buffer
+	 * @return the game
+	 * @throws IOException
+	 *             if the buffer does not hold a valid save
+	 */
+	public static GameModel read(ByteBuffer buffer) throws IOException {
+		if (buffer.remaining() < VERSION_1_HEADER_LENGTH || buffer.getInt() != MAGIC) {
+			throw new IOException("Not a saved game");
+		}
+		short version = buffer.getShort();
+		if (version != 1 && version != VERSION) {
+			throw new IOException("Unsupported version " + version + " of saved game");
+		}
+
+		int flags = buffer.get();
+		int currentSelectedColor = buffer.get();
+		int size = buffer.getInt();
+		int numberOfSteps = buffer.getInt();
+		long seed = 0;
+		if (version >= 2) {
+			if (buffer.remaining() < HEADER_LENGTH - VERSION_1_HEADER_LENGTH) {
+				throw new IOException("Truncated saved game");
+			}
+			seed = buffer.getLong();
+		}
+
+		if (size <= 0 || size > MAXIMUM_SIZE || buffer.remaining() < getLength(size) - HEADER_LENGTH) {
+			throw new IOException("Truncated saved game");
+		}
+		if (currentSelectedColor < -1 || currentSelectedColor >= GameModel.NUMBER_OF_COLORS) {
+			throw new IOException("Invalid color " + currentSelectedColor + " in saved game");
+		}
+
+		int numberOfDots = size * size;
+		long[] colorWords = new long[(numberOfDots + COLORS_PER_WORD - 1) / COLORS_PER_WORD];
+		long[] captured = new long[(numberOfDots + 63) >>> 6];
+		LongBuffer words = buffer.asLongBuffer();
+		words.get(colorWords);
+		words.get(captured);
+		buffer.position(buffer.position() + 8 * (colorWords.length + captured.length));
+
+		// Decoded into whole words, then cut to the number of dots
+		byte[] colors = new byte[colorWords.length * COLORS_PER_WORD];
+		for (int w = 0; w < colorWords.length; w++) {
+			long word = colorWords[w];
+			if ((word & (word << 1) & HIGH_BITS) != 0) {
+				throw new IOException("Invalid color in saved game");
+			}
+
+			int first = w * COLORS_PER_WORD;
+			for (int k = 0; k < COLORS_PER_WORD; k++) {
+				colors[first + k] = (byte) (word & 7);
+				word >>>= 3;
+			}
+		}
+		if (colors.length != numberOfDots) {
+			colors = Arrays.copyOf(colors, numberOfDots);
+		}
+
+		if ((numberOfDots & 63) != 0) {
+			captured[captured.length - 1] &= (1L << numberOfDots) - 1;
+		}
+
+		return new GameModel(size, seed, colors, captured, currentSelectedColor, numberOfSteps,
+				(flags & ORTHOGONAL_FLAG) != 0, (flags & PLANE_FLAG) != 0);
+	}
+
+	/**
+	 * Reads a game saved with Java serialization by the previous versions
+	 *
+	 * @param path
+	 *            the file
+	 * @return the game
+	 * @throws IOException
+	 *             if the file cannot be read or does not hold a game
+	 */
+	public static GameModel importSerialized(Path path) throws IOException {
+		try (InputStream file = Files.newInputStream(path);
+				ObjectInputStream saved = new ObjectInputStream(file)) {
+			return (GameModel) saved.readObject();
+		} catch (ClassNotFoundException | ClassCastException e) {
+			throw new IOException("Not a saved game", e);
+		}
+	}
+
+}
@@ -0,0 +1,27 @@
+/**
+ * A <b>SimulatedGame</b> is a game as seen by a <b>MovePolicy</b>: its current
+ * color and the dots each color would capture at least. It is implemented by the
+ * <b>GameEngine</b> and by the <b>BitboardFlood</b>, so a <b>BatchSimulator</b>
+ * can play the same policies on either engine.
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public interface SimulatedGame {
+
+	/**
+	 * Getter for the current selected color
+	 *
+	 * @return the color of the captured region, -1 if the game has not started
+	 */
+	public abstract int getCurrentSelectedColor();
+
+	/**
+	 * Counts the uncaptured dots of a color that touch the captured region
+	 *
+	 * @param color
+	 *            the color
+	 * @return the number of frontier dots of that color
+	 */
+	public abstract int getFrontierSize(int color);
+
+}
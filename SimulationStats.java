@@ -0,0 +1,178 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The class <b>SimulationStats</b> aggregates the results of simulated games: for
+ * every board size, the distribution of the number of moves needed to finish a
+ * game. Each worker of a <b>BatchSimulator</b> fills its own instance, and the
+ * instances are merged once the workers are done, so no lock is needed.
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public class SimulationStats {
+
+	/**
+	 * For each size, histogram[moves] is the number of games finished in that
+	 * many moves
+	 */
+	private Map<Integer, long[]> histograms;
+
+	private long elapsedNanos;
+
+	/**
+	 * Constructor, creates empty statistics
+	 */
+	public SimulationStats() {
+		histograms = new TreeMap<Integer, long[]>();
+	}
+
+	/**
+	 * Records a finished game
+	 *
+	 * @param size
+	 *            the size of the board
+	 * @param moves
+	 *            the number of moves played
+	 */
+	public void addGame(int size, int moves) {
+		histogram(size, moves)[moves]++;
+	}
+
+	/**
+	 * Adds the games of other statistics to these ones
+	 *
+	 * @param other
+	 *            the statistics to add
+	 */
+	public void merge(SimulationStats other) {
+		for (Map.Entry<Integer, long[]> entry : other.histograms.entrySet()) {
+			long[] counts = entry.getValue();
+			long[] histogram = histogram(entry.getKey(), counts.length - 1);
+			for (int moves = 0; moves < counts.length; moves++) {
+				histogram[moves] += counts[moves];
+			}
+		}
+	}
+
+	/**
+	 * Returns the histogram of a size, large enough to count games of the given
+	 * number of moves
+	 */
+	private long[] histogram(int size, int moves) {
+		long[] histogram = histograms.get(size);
+		if (histogram == null) {
+			histogram = new long[Math.max(64, moves + 1)];
+			histograms.put(size, histogram);
+		} else if (histogram.length <= moves) {
+			histogram = Arrays.copyOf(histogram, Math.max(2 * histogram.length, moves + 1));
+			histograms.put(size, histogram);
+		}
+		return histogram;
+	}
+
+	/**
+	 * Setter for the wall-clock time taken by the simulation
+	 *
+	 * @param elapsedNanos
+	 *            the time, in nanoseconds
+	 */
+	public void setElapsedNanos(long elapsedNanos) {
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	/**
+	 * Counts the games played on boards of a size
+	 *
+	 * @param size
+	 *            the size of the board
+	 * @return the number of games
+	 */
+	public long getGames(int size) {
+		long games = 0;
+		long[] histogram = histograms.get(size);
+		if (histogram != null) {
+			for (long count : histogram) {
+				games += count;
+			}
+		}
+		return games;
+	}
+
+	/**
+	 * Counts the moves of the games played on boards of a size
+	 *
+	 * @param size
+	 *            the size of the board
+	 * @return the total number of moves
+	 */
+	public long getMoves(int size) {
+		long moves = 0;
+		long[] histogram = histograms.get(size);
+		if (histogram != null) {
+			for (int m = 0; m < histogram.length; m++) {
+				moves += m * histogram[m];
+			}
+		}
+		return moves;
+	}
+
+	/**
+	 * Finds a percentile of the number of moves of the games on boards of a size
+	 *
+	 * @param size
+	 *            the size of the board
+	 * @param percentile
+	 *            the percentile, between 0 and 100
+	 * @return the smallest number of moves such that at least percentile % of the
+	 *         games took no more moves, or -1 if no game was played
+	 */
+	public int getPercentile(int size, double percentile) {
+		long games = getGames(size);
+		if (games == 0) {
+			return -1;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * games));
+		long[] histogram = histograms.get(size);
+		long seen = 0;
+		for (int moves = 0; moves < histogram.length; moves++) {
+			seen += histogram[moves];
+			if (seen >= rank) {
+				return moves;
+			}
+		}
+		return histogram.length - 1;
+	}
+
+	/**
+	 * Builds a report: throughput, then for each size the number of games and the
+	 * distribution of the number of moves
+	 *
+	 * @return the report
+	 */
+	public String toString() {
+		StringBuilder b = new StringBuilder();
+		long totalGames = 0;
+		long totalMoves = 0;
+		for (int size : histograms.keySet()) {
+			totalGames += getGames(size);
+			totalMoves += getMoves(size);
+		}
+
+		double seconds = elapsedNanos / 1e9;
+		b.append(String.format("%d games, %d moves in %.3f s: %.0f games/s, %.0f moves/s%n",
+				totalGames, totalMoves, seconds, totalGames / seconds, totalMoves / seconds));
+		b.append(String.format("%6s %10s %8s %6s %6s %6s %6s %6s %6s%n",
+				"size", "games", "mean", "min", "p50", "p90", "p99", "p99.9", "max"));
+		for (int size : histograms.keySet()) {
+			long games = getGames(size);
+			b.append(String.format("%6d %10d %8.2f %6d %6d %6d %6d %6d %6d%n",
+					size, games, (double) getMoves(size) / games,
+					getPercentile(size, 0), getPercentile(size, 50), getPercentile(size, 90),
+					getPercentile(size, 99), getPercentile(size, 99.9), getPercentile(size, 100)));
+		}
+		return b.toString();
+	}
+
+}
@@ -0,0 +1,276 @@
+import java.util.Arrays;
+
+/**
+ * The class <b>Solver</b> finds the minimum number of moves needed to finish a
+ * game, under its plane/torus and orthogonal/diagonal rules. It is used to give
+ * the ``par'' of a board.
+ *
+ * The search is an IDA*: depth-first searches with an increasing bound on the
+ * number of moves, cut as soon as the moves played plus a lower bound of the
+ * moves left exceed it. Two admissible lower bounds are used: the number of
+ * colors still present on the board (a move removes at most one color) and the
+ * number of layers of same-color areas between the captured region and the
+ * farthest dot (a move captures at most one more layer), which is the distance
+ * to the farthest region in the region graph.
+ *
+ * The search works on the <b>RegionGraph</b> of the board: a state is the set of
+ * captured regions, handled by a <b>RegionFlood</b>, so a move and the copy of a
+ * state cost about the number of regions instead of the number of dots. States
+ * already visited at a smaller depth during the current iteration are skipped,
+ * thanks to a transposition table of fixed size indexed by a hash of the
+ * captured regions. Finally, a move that removes a color from the board is
+ * always played at once: there is an optimal solution starting with it.
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public class Solver {
+
+	private static final int INFINITY = Integer.MAX_VALUE / 2;
+
+	/**
+	 * Transposition table: the hash of a state, the depth at which it was reached
+	 * and the iteration of the search in which it was stored
+	 */
+	private final int tableMask;
+	private final long[] tableKeys;
+	private final short[] tableDepths;
+	private final int[] tableIterations;
+	private int iteration;
+
+	private RegionFlood board;
+
+	/**
+	 * The state at each depth of the current path, the colors played and
+	 * the order in which the moves are tried
+	 */
+	private long[][] savedStates;
+	private int[] path;
+	private int[][] gains;
+	private int[] solution;
+
+	private long nodes;
+	private long maximumNodes;
+
+	/**
+	 * Constructor, with a transposition table of about a million entries (14 MB)
+	 */
+	public Solver() {
+		this(20);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param tableBits
+	 *            the transposition table holds 2^tableBits entries
+	 */
+	public Solver(int tableBits) {
+		tableMask = (1 << tableBits) - 1;
+		tableKeys = new long[1 << tableBits];
+		tableDepths = new short[1 << tableBits];
+		tableIterations = new int[1 << tableBits];
+	}
+
+	/**
+	 * Finds an optimal sequence of colors to finish a game that has started
+	 *
+	 * @param gameModel
+	 *            the game, with at least one captured dot
+	 * @return the colors to play, in order; its length is the par of the game
+	 */
+	public int[] solve(GameModel gameModel) {
+		if (gameModel.getNumberCaptured() == 0) {
+			throw new IllegalArgumentException("The first dot of the game must be captured");
+		}
+
+		// The captured dots must be whole regions: they are once flooded with the
+		// current color
+		GameModel start = gameModel.clone();
+		new FloodFrontier(start).flood();
+
+		board = new RegionFlood(new RegionGraph(start), start);
+		return search(INFINITY, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Finds an optimal sequence of colors to finish a new game, once the given dot
+	 * is selected as the first dot
+	 *
+	 * @param gameModel
+	 *            the game, with no captured dot
+	 * @param row
+	 *            the row of the first dot
+	 * @param column
+	 *            the column of the first dot
+	 * @return the colors to play after the first dot, in order
+	 */
+	public int[] solve(GameModel gameModel, int row, int column) {
+		return solve(gameModel, row, column, INFINITY, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Finds an optimal sequence of colors to finish a new game, unless it is longer
+	 * than a number of moves or takes too long to find. Giving up as soon as the
+	 * bound of the search exceeds maximumMoves skips the most expensive iterations
+	 *
+	 * @param gameModel
+	 *            the game, with no captured dot
+	 * @param row
+	 *            the row of the first dot
+	 * @param column
+	 *            the column of the first dot
+	 * @param maximumMoves
+	 *            the longest solution wanted
+	 * @param maximumNodes
+	 *            the number of states after which the search gives up
+	 * @return the colors to play after the first dot, in order, or null if the par
+	 *         is above maximumMoves or was not found within maximumNodes states
+	 */
+	public int[] solve(GameModel gameModel, int row, int column, int maximumMoves, long maximumNodes) {
+		RegionGraph regionGraph = new RegionGraph(gameModel);
+		board = new RegionFlood(regionGraph, regionGraph.getRegion(row * gameModel.getSize() + column));
+		return search(maximumMoves, maximumNodes);
+	}
+
+	/**
+	 * Getter for the number of states visited by the last search
+	 *
+	 * @return the number of nodes
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Runs the iterations of IDA* on the loaded board, up to a bound of
+	 * maximumMoves and maximumNodes states
+	 *
+	 * @return the solution, or null if none was found within the limits
+	 */
+	private int[] search(int maximumMoves, long maximumNodes) {
+		nodes = 0;
+		this.maximumNodes = maximumNodes;
+		savedStates = new long[16][];
+		path = new int[16];
+		gains = new int[16][];
+		solution = null;
+
+		int bound = lowerBound(INFINITY);
+		while (solution == null && bound <= maximumMoves && nodes <= maximumNodes) {
+			iteration++;
+			bound = search(0, bound);
+		}
+		return solution;
+	}
+
+	/**
+	 * Searches a solution of at most bound moves from the current state, reached
+	 * after depth moves
+	 *
+	 * @return the bound to try next if no solution was found
+	 */
+	private int search(int depth, int bound) {
+		nodes++;
+
+		if (board.isFinished()) {
+			solution = Arrays.copyOf(path, depth);
+			return depth;
+		}
+		if (nodes > maximumNodes) {
+			return INFINITY;
+		}
+
+		int estimate = depth + lowerBound(bound - depth);
+		if (estimate > bound) {
+			return estimate;
+		}
+
+		if (isTransposition(depth)) {
+			return INFINITY;
+		}
+
+		if (depth == savedStates.length) {
+			savedStates = Arrays.copyOf(savedStates, 2 * depth);
+			path = Arrays.copyOf(path, 2 * depth);
+			gains = Arrays.copyOf(gains, 2 * depth);
+		}
+		if (savedStates[depth] == null) {
+			savedStates[depth] = new long[board.getStateLength()];
+			gains[depth] = new int[GameModel.NUMBER_OF_COLORS];
+		}
+		long[] state = savedStates[depth];
+		board.copyStateTo(state);
+
+		// Plays alone a color that disappears from the board, otherwise tries the
+		// colors touching the region, the one capturing the most dots first
+		int colors = board.getFrontierColors();
+		int[] gains = this.gains[depth];
+		int order = 0;
+		for (int color = 0; color < GameModel.NUMBER_OF_COLORS; color++) {
+			if ((colors & (1 << color)) != 0) {
+				board.flood(color);
+				boolean removesColor = (board.getRemainingColors() & (1 << color)) == 0;
+				int gain = board.getNumberCaptured();
+				board.setState(state);
+
+				if (removesColor) {
+					gains[0] = color;
+					order = 1;
+					break;
+				}
+
+				// Insertion by decreasing gain, the color kept in the low bits
+				int key = gain << 3 | color;
+				int position = order++;
+				while (position > 0 && gains[position - 1] < key) {
+					gains[position] = gains[position - 1];
+					position--;
+				}
+				gains[position] = key;
+			}
+		}
+
+		int next = INFINITY;
+		for (int k = 0; k < order && solution == null; k++) {
+			int color = gains[k] & 7;
+			board.flood(color);
+			path[depth] = color;
+			next = Math.min(next, search(depth + 1, bound));
+			board.setState(state);
+		}
+		return next;
+	}
+
+	/**
+	 * Lower bound of the number of moves left from the current state
+	 *
+	 * @param limit
+	 *            the bound is not computed precisely above this value
+	 */
+	private int lowerBound(int limit) {
+		int colors = Integer.bitCount(board.getRemainingColors());
+		if (colors > limit) {
+			return colors;
+		}
+		return Math.max(colors, board.getLayerDistance(limit));
+	}
+
+	/**
+	 * Checks if the current state was already reached, at the same or a smaller
+	 * depth, during this iteration; otherwise remembers it
+	 */
+	private boolean isTransposition(int depth) {
+		long key = board.getCapturedHash();
+		int slot = (int) (key ^ (key >>> 32)) & tableMask;
+
+		if (tableKeys[slot] == key && tableIterations[slot] == iteration && tableDepths[slot] <= depth) {
+			return true;
+		}
+
+		tableKeys[slot] = key;
+		tableDepths[slot] = (short) depth;
+		tableIterations[slot] = iteration;
+		return false;
+	}
+
+}
@@ -0,0 +1,95 @@
+package floodit;
+
+import java.util.Random;
+
+/**
+ * Builds the boards used by the benchmarks. Colors come from a fixed seed so every
+ * run measures exactly the same boards and games.
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+public class Boards {
+
+	public static final long SEED = 8876521L;
+
+	/**
+	 * Creates a new game (no dot captured yet) from the fixed seed
+	 *
+	 * @param size
+	 *            the size of the board
+	 * @param isPlane
+	 *            true on a plane, false on a torus
+	 * @param isOrthogonal
+	 *            true if only orthogonal dots are adjacent
+	 * @return the model
+	 */
+	public static GameModel newGame(int size, boolean isPlane, boolean isOrthogonal) {
+		Random generator = new Random(SEED + size);
+		DotInfo[][] dots = new DotInfo[size][size];
+
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				dots[i][j] = new DotInfo(i, j, generator.nextInt(GameModel.NUMBER_OF_COLORS));
+			}
+		}
+
+		return new GameModel(-1, size, dots, -1, 0, isOrthogonal, isPlane);
+	}
+
+	/**
+	 * The dot captured first in every benchmarked game: the center of the board
+	 *
+	 * @param size
+	 *            the size of the board
+	 * @return the index of the dot
+	 */
+	public static int firstDot(int size) {
+		return (size / 2) * size + size / 2;
+	}
+
+	/**
+	 * The color played by the benchmarks after a given one: colors are played in
+	 * turn, which always finishes the game
+	 *
+	 * @param color
+	 *            the current color
+	 * @return the next color to play
+	 */
+	public static int nextColor(int color) {
+		return (color + 1) % GameModel.NUMBER_OF_COLORS;
+	}
+
+	/**
+	 * Plays a game the way GameController does: capture the first dot, then
+	 * select colors in turn, recording every move in the history
+	 *
+	 * @param gameModel
+	 *            a new game
+	 * @param maximumMoves
+	 *            the number of moves after which to stop
+	 * @return the history of the game
+	 */
+	public static MoveHistory play(GameModel gameModel, int maximumMoves) {
+		FloodFrontier floodFrontier = new FloodFrontier(gameModel);
+		MoveHistory moveHistory = new MoveHistory();
+		int size = gameModel.getSize();
+
+		floodFrontier.capture(firstDot(size));
+		int color = gameModel.getColor(firstDot(size));
+
+		for (int move = 0; move < maximumMoves && !gameModel.isFinished(); move++) {
+			int previousColor = gameModel.getCurrentSelectedColor();
+			int previousSteps = gameModel.getNumberOfSteps();
+
+			gameModel.setCurrentSelectedColor(color);
+			floodFrontier.flood();
+			gameModel.step();
+			moveHistory.record(previousColor, previousSteps, gameModel, floodFrontier.takeCapturedDots());
+
+			color = nextColor(color);
+		}
+
+		return moveHistory;
+	}
+
+}
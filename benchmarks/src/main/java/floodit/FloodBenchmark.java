@@ -0,0 +1,154 @@
+package floodit;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the flood, as run by GameController.selectColor: a whole game played
+ * from a new board, and a single move on a board in the middle of a game. The
+ * same game and move are also measured on the bitboard engine used by
+ * BatchSimulator engine=bitboard, and the move on the region graph of the board.
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Dfloodit.metrics=false"})
+public class FloodBenchmark {
+
+	@Param({"10", "50", "100", "500", "2000"})
+	public int size;
+
+	@Param({"true", "false"})
+	public boolean isPlane;
+
+	@Param({"true", "false"})
+	public boolean isOrthogonal;
+
+	/**
+	 * A new game, copied before each game
+	 */
+	private GameModel newGame;
+
+	@Setup(Level.Trial)
+	public void createBoard() {
+		newGame = Boards.newGame(size, isPlane, isOrthogonal);
+	}
+
+	/**
+	 * Plays a whole game, from the first dot to the last
+	 */
+	@Benchmark
+	public int playGame() {
+		GameModel gameModel = newGame.clone();
+		Boards.play(gameModel, Integer.MAX_VALUE);
+		return gameModel.getNumberOfSteps();
+	}
+
+	/**
+	 * Plays the same game on a bitboard, without recording the moves
+	 */
+	@Benchmark
+	public int playGameBitboard() {
+		BitboardFlood bitboard = new BitboardFlood(newGame);
+		int firstDot = Boards.firstDot(size);
+		bitboard.capture(firstDot / size, firstDot % size);
+
+		int moves = 0;
+		for (int color = newGame.getColor(firstDot); !bitboard.isFinished(); color = Boards.nextColor(color)) {
+			bitboard.flood(color);
+			moves++;
+		}
+		return moves;
+	}
+
+	/**
+	 * Plays one move in the middle of a game
+	 */
+	@Benchmark
+	public int selectColor(HalfGame halfGame) {
+		halfGame.gameModel.setCurrentSelectedColor(halfGame.color);
+		halfGame.floodFrontier.flood();
+		halfGame.gameModel.step();
+		return halfGame.floodFrontier.takeCapturedDots().length;
+	}
+
+	/**
+	 * Plays the same move on a bitboard
+	 */
+	@Benchmark
+	public int selectColorBitboard(HalfGame halfGame) {
+		return halfGame.bitboard.flood(halfGame.color);
+	}
+
+	/**
+	 * Plays the same move on the region graph
+	 */
+	@Benchmark
+	public int selectColorRegions(HalfGame halfGame) {
+		return halfGame.regionFlood.flood(halfGame.color);
+	}
+
+	/**
+	 * A game in which about half of the moves were played, copied before each move.
+	 * It is a state of its own, so that only the single moves pay for the copy
+	 */
+	@State(Scope.Thread)
+	public static class HalfGame {
+
+		private GameModel halfGame;
+		private int color;
+
+		private GameModel gameModel;
+		private FloodFrontier floodFrontier;
+		private BitboardFlood bitboard;
+
+		/**
+		 * The regions of the half game, and their state copied before each move
+		 */
+		private long[] state;
+		private RegionFlood regionFlood;
+
+		@Setup(Level.Trial)
+		public void createBoards(FloodBenchmark benchmark) {
+			GameModel fullGame = benchmark.newGame.clone();
+			Boards.play(fullGame, Integer.MAX_VALUE);
+
+			halfGame = benchmark.newGame.clone();
+			Boards.play(halfGame, fullGame.getNumberOfSteps() / 2);
+			color = Boards.nextColor(halfGame.getCurrentSelectedColor());
+
+			regionFlood = new RegionFlood(new RegionGraph(halfGame), halfGame);
+			state = new long[regionFlood.getStateLength()];
+			regionFlood.copyStateTo(state);
+			bitboard = new BitboardFlood(halfGame);
+		}
+
+		@Setup(Level.Invocation)
+		public void copyHalfGame() {
+			// The frontier is built here so the move only measures the flood itself
+			gameModel = halfGame.clone();
+			floodFrontier = new FloodFrontier(gameModel);
+			floodFrontier.flood();
+			regionFlood.setState(state);
+			bitboard.load(halfGame);
+		}
+
+	}
+
+}
@@ -0,0 +1,119 @@
+package floodit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the operations on the whole model: clone, reset, the binary format
+ * used by GameController.saveGameModel and loadGameModel, and the Java
+ * serialization it replaced. The model is taken in the middle of a game.
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Dfloodit.metrics=false"})
+public class ModelBenchmark {
+
+	@Param({"10", "50", "100", "500", "2000"})
+	public int size;
+
+	@Param({"true", "false"})
+	public boolean isPlane;
+
+	@Param({"true", "false"})
+	public boolean isOrthogonal;
+
+	private GameModel halfGame;
+	private ByteBuffer saveBuffer;
+	private ByteBuffer savedGame;
+	private byte[] serializedGame;
+
+	private GameModel resetModel;
+
+	@Setup(Level.Trial)
+	public void createBoards() throws IOException {
+		GameModel fullGame = Boards.newGame(size, isPlane, isOrthogonal);
+		Boards.play(fullGame, Integer.MAX_VALUE);
+
+		halfGame = Boards.newGame(size, isPlane, isOrthogonal);
+		Boards.play(halfGame, fullGame.getNumberOfSteps() / 2);
+		serializedGame = serialize(halfGame);
+
+		saveBuffer = ByteBuffer.allocate(SaveFile.getLength(size));
+		savedGame = ByteBuffer.allocate(SaveFile.getLength(size));
+		SaveFile.write(halfGame, savedGame);
+		savedGame.flip();
+
+		resetModel = halfGame.clone();
+	}
+
+	@Benchmark
+	public GameModel cloneModel() {
+		return halfGame.clone();
+	}
+
+	@Benchmark
+	public GameModel reset() {
+		resetModel.reset();
+		return resetModel;
+	}
+
+	@Benchmark
+	public ByteBuffer saveGameModel() {
+		saveBuffer.clear();
+		SaveFile.write(halfGame, saveBuffer);
+		return saveBuffer;
+	}
+
+	@Benchmark
+	public GameModel loadGameModel() throws IOException {
+		return SaveFile.read(savedGame.duplicate());
+	}
+
+	@Benchmark
+	public byte[] saveSerialized() throws IOException {
+		return serialize(halfGame);
+	}
+
+	@Benchmark
+	public GameModel loadSerialized() throws IOException, ClassNotFoundException {
+		ObjectInputStream saved = new ObjectInputStream(new ByteArrayInputStream(serializedGame));
+		GameModel gameModel = (GameModel) saved.readObject();
+		saved.close();
+		return gameModel;
+	}
+
+	/**
+	 * Serializes a model, the way the previous versions of the game saved it
+	 */
+	private static byte[] serialize(GameModel gameModel) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(gameModel);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+}
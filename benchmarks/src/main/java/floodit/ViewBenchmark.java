@@ -0,0 +1,106 @@
+package floodit;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures GameView.updateBoard, run headless on a grid of DotButtons, after a
+ * move (the captured region changes color), and GameView.updateDots, which only
+ * updates the dots given by the snapshots of the engine.
+ *
+ * The sizes stop at 500: a 2000x2000 board would need four million DotButtons,
+ * which does not fit in a reasonable heap.
+ *
+ * @author Jérémie Beaudoin-Dion
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Dfloodit.metrics=false"})
+public class ViewBenchmark {
+
+	@Param({"10", "50", "100", "500"})
+	public int size;
+
+	@Param({"true", "false"})
+	public boolean isPlane;
+
+	@Param({"true", "false"})
+	public boolean isOrthogonal;
+
+	private DotButton[][] board;
+
+	/**
+	 * Two consecutive states of the same game, shown in turn
+	 */
+	private GameSnapshot[] gameSnapshots;
+	private int shown;
+
+	/**
+	 * A game at the same state, whose last move is undone and redone in turn
+	 */
+	private GameEngine gameEngine;
+
+	@Setup(Level.Trial)
+	public void createBoard() {
+		GameModel fullGame = Boards.newGame(size, isPlane, isOrthogonal);
+		Boards.play(fullGame, Integer.MAX_VALUE);
+		int moves = fullGame.getNumberOfSteps() / 2;
+
+		GameModel[] gameModels = new GameModel[2];
+		gameModels[0] = Boards.newGame(size, isPlane, isOrthogonal);
+		Boards.play(gameModels[0], moves);
+		gameModels[1] = Boards.newGame(size, isPlane, isOrthogonal);
+		Boards.play(gameModels[1], moves + 1);
+		gameSnapshots = new GameSnapshot[] { new GameSnapshot(gameModels[0]), new GameSnapshot(gameModels[1]) };
+
+		gameEngine = new GameEngine(Boards.newGame(size, isPlane, isOrthogonal));
+		gameEngine.selectDot(Boards.firstDot(size) / size, Boards.firstDot(size) % size);
+		int color = gameEngine.getGameModel().getCurrentSelectedColor();
+		while (gameEngine.getNumberOfSteps() < moves) {
+			color = Boards.nextColor(color);
+			gameEngine.play(color);
+		}
+		gameEngine.undo();
+		gameEngine.snapshot();
+
+		board = new DotButton[size][size];
+		for (int row = 0; row < size; row++) {
+			for (int column = 0; column < size; column++) {
+				board[row][column] = new DotButton(row, column, gameModels[0].getColor(row, column),
+						(size < 26 ? DotButton.MEDIUM_SIZE : DotButton.SMALL_SIZE));
+			}
+		}
+	}
+
+	@Benchmark
+	public DotButton[][] updateBoard() {
+		shown = 1 - shown;
+		GameView.updateBoard(board, gameSnapshots[shown]);
+		return board;
+	}
+
+	@Benchmark
+	public DotButton[][] updateChangedDots() {
+		if (gameEngine.redo() || gameEngine.undo()) {
+			GameSnapshot snapshot = gameEngine.snapshot();
+			GameView.updateDots(board, snapshot, snapshot.getChangedDots());
+		}
+		return board;
+	}
+
+}